@@ -2,7 +2,6 @@ import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -16,10 +15,13 @@ public class Hotel {
     private List<Booking> bookings;
     private final String roomsFile = "rooms.txt";
     private final String bookingsFile = "bookings.txt";
+    private final IdSequence bookingIds;
 
     public Hotel() {
         rooms = new ArrayList<>();
         bookings = new ArrayList<>();
+        // Persisted on its own so IDs of cancelled bookings are never handed out again
+        bookingIds = new IdSequence("booking_sequence.txt");
         loadRooms();
         loadBookings();
     }
@@ -103,10 +105,7 @@ public class Hotel {
             return null;
         }
 
-        int bookingId = bookings.stream()
-                .map(Booking::getBookingId)
-                .max(Comparator.naturalOrder())
-                .orElse(0) + 1;
+        int bookingId = bookingIds.next();
 
         long nights = java.time.temporal.ChronoUnit.DAYS.between(checkInDate, checkOutDate);
         double amount = nights * room.getPricePerNight();
@@ -248,6 +247,7 @@ public class Hotel {
                 LocalDate checkOutDate = LocalDate.parse(parts[5].trim());
                 double amountPaid = Double.parseDouble(parts[6].trim());
 
+                bookingIds.observe(bookingId);
                 bookings.add(new Booking(bookingId, customerName, roomNumber,
                         category, checkInDate, checkOutDate, amountPaid));
             }
@@ -0,0 +1,136 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Synthetic platform data for the benchmarks, written as the CSV files the platform imports
+ * The same sizes and seed always produce the same files. Every user holds a large
+ * position in a few stocks, so sells never run out of shares, and has a balance
+ * large enough for any number of one-share buys
+ *
+ * @author Hend Okasha
+ */
+public class BenchmarkDataset {
+    private static final int HOLDINGS_PER_USER = 2;
+    private static final int HOLDING_QUANTITY = 1_000_000;
+    private static final String BALANCE = "1000000000.00";
+    private static final LocalDate PURCHASE_DATE = LocalDate.of(2026, 1, 2);
+    private static final LocalDateTime FIRST_TRADE = LocalDateTime.of(2026, 1, 2, 9, 30);
+
+    private final int users;
+    private final int stocks;
+    private final int transactions;
+    private final long seed;
+    private final long[] priceCents;
+
+    public BenchmarkDataset(int users, int stocks, int transactions, long seed) {
+        if (users <= 0 || stocks <= 0 || transactions < 0) {
+            throw new IllegalArgumentException("Dataset needs users and stocks");
+        }
+        this.users = users;
+        this.stocks = stocks;
+        this.transactions = transactions;
+        this.seed = seed;
+        this.priceCents = new long[stocks];
+
+        Random random = new Random(seed);
+        for (int i = 0; i < stocks; i++) {
+            priceCents[i] = 100 + random.nextInt(49_901);
+        }
+    }
+
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getStocks() {
+        return stocks;
+    }
+
+    public int getTransactions() {
+        return transactions;
+    }
+
+
+    public String symbol(int stockIndex) {
+        return "S" + (10_000_000 + stockIndex);
+    }
+
+
+    public int userId(int userIndex) {
+        return userIndex + 1;
+    }
+
+
+    public int holdingsPerUser() {
+        return Math.min(HOLDINGS_PER_USER, stocks);
+    }
+
+
+    /**
+     * Stock index of one of the user's positions; slot ranges over holdingsPerUser()
+     */
+    public int heldStock(int userIndex, int slot) {
+        return (int) (((long) userIndex * 7919 + slot) % stocks);
+    }
+
+
+    /**
+     * Writes stocks.txt, users.txt, holdings.txt and transactions.txt into the folder
+     */
+    public void writeCsv(File dataDirectory) throws IOException {
+        try (PrintWriter pw = open(dataDirectory, "stocks.txt")) {
+            for (int i = 0; i < stocks; i++) {
+                String price = Money.format(priceCents[i] * (Money.SCALE / 100));
+                pw.println(symbol(i) + ",Stock " + i + "," + price + "," + price);
+            }
+        }
+
+        try (PrintWriter pw = open(dataDirectory, "users.txt")) {
+            for (int i = 0; i < users; i++) {
+                pw.println(userId(i) + ",user" + userId(i) + "," + BALANCE);
+            }
+        }
+
+        try (PrintWriter pw = open(dataDirectory, "holdings.txt")) {
+            for (int i = 0; i < users; i++) {
+                for (int slot = 0; slot < holdingsPerUser(); slot++) {
+                    int stockIndex = heldStock(i, slot);
+                    pw.println(userId(i) + "," + symbol(stockIndex) + "," + HOLDING_QUANTITY + "," +
+                            Money.format(priceCents[stockIndex] * (Money.SCALE / 100)) + "," + PURCHASE_DATE);
+                }
+            }
+        }
+
+        Random random = new Random(seed + 1);
+        try (PrintWriter pw = open(dataDirectory, "transactions.txt")) {
+            for (int i = 0; i < transactions; i++) {
+                int stockIndex = random.nextInt(stocks);
+                pw.println((i + 1) + "," +
+                        userId(i % users) + "," +
+                        symbol(stockIndex) + "," +
+                        ((i & 1) == 0 ? TransactionType.BUY : TransactionType.SELL) + "," +
+                        (1 + random.nextInt(100)) + "," +
+                        Money.format(priceCents[stockIndex] * (Money.SCALE / 100)) + "," +
+                        FIRST_TRADE.plusSeconds(i));
+            }
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return users + " users, " + stocks + " stocks, " + transactions + " transactions";
+    }
+
+
+    private static PrintWriter open(File dataDirectory, String name) throws IOException {
+        return new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDirectory, name)), 1 << 16));
+    }
+}
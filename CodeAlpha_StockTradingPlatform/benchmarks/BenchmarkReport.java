@@ -0,0 +1,243 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark results: console table, JSON export and comparison with a saved baseline
+ * The JSON follows the layout of JMH's -rf json output (one object per result,
+ * average time in ns/op as the primary metric, bytes allocated per operation as
+ * gc.alloc.rate.norm), so the usual JMH result viewers can read it. Each result
+ * is written on one line, which is what the baseline reader relies on
+ *
+ * @author Hend Okasha
+ */
+public class BenchmarkReport {
+    // Student's t for a two-sided 99.9% interval, by degrees of freedom 1..10
+    private static final double[] T_999 = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+
+    private static final Pattern BENCHMARK = Pattern.compile("\"benchmark\" : \"([^\"]+)\"");
+    private static final Pattern PARAMS = Pattern.compile("\"params\" : (\\{[^}]*\\})");
+    private static final Pattern PRIMARY = Pattern.compile(
+            "\"primaryMetric\" : \\{\"score\" : ([^,]+), \"scoreError\" : ([^,]+),");
+
+    private final String suite;
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final double iterationSeconds;
+    private final List<Result> results = new ArrayList<>();
+
+    public BenchmarkReport(String suite, int warmupIterations, int measurementIterations, double iterationSeconds) {
+        this.suite = suite;
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationSeconds = iterationSeconds;
+    }
+
+
+    /**
+     * Records one benchmark on one dataset
+     *
+     * @param params        dataset parameters in display order
+     * @param nanosPerOp    average time per operation of each measured iteration
+     * @param bytesPerOp    bytes allocated per operation of each measured iteration
+     */
+    public Result add(String benchmark, Map<String, Integer> params, double[] nanosPerOp, double[] bytesPerOp) {
+        Result result = new Result(suite + "." + benchmark, new LinkedHashMap<>(params), nanosPerOp, bytesPerOp);
+        results.add(result);
+        return result;
+    }
+
+
+    public void printTable() {
+        if (results.isEmpty()) {
+            System.out.println("No benchmarks matched.");
+            return;
+        }
+        System.out.printf("%n%-45s %-28s %4s %14s %12s %12s%n",
+                "Benchmark", "(users, stocks, transactions)", "Cnt", "Score ns/op", "Error", "B/op");
+        for (Result result : results) {
+            System.out.printf("%-45s %-28s %4d %14.3f %12.3f %12.1f%n", result.benchmark,
+                    result.params.values(), result.nanosPerOp.length, result.getScore(),
+                    result.getScoreError(), result.getBytesPerOp());
+        }
+    }
+
+
+    public void writeJson(String file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+            pw.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                pw.println(toJson(results.get(i)) + (i + 1 < results.size() ? "," : ""));
+            }
+            pw.println("]");
+        }
+    }
+
+
+    /**
+     * Prints each result next to the same benchmark and dataset in the baseline file
+     * A result counts as a regression when it is slower than the baseline by more
+     * than the threshold and by more than the two error margins together
+     *
+     * @return number of regressions found
+     */
+    public int compareWith(String baselineFile, double thresholdPercent) throws IOException {
+        Map<String, double[]> baseline = readScores(baselineFile);
+        int regressions = 0;
+
+        System.out.printf("%n%-45s %-28s %14s %14s %9s%n",
+                "Benchmark", "(users, stocks, transactions)", "Baseline", "Current", "Change");
+        for (Result result : results) {
+            double[] before = baseline.get(result.benchmark + paramsJson(result.params));
+            if (before == null) {
+                System.out.printf("%-45s %-28s %14s %14.3f %9s%n", result.benchmark,
+                        result.params.values(), "-", result.getScore(), "new");
+                continue;
+            }
+
+            double change = (result.getScore() - before[0]) / before[0] * 100;
+            boolean beyondError = Math.abs(result.getScore() - before[0]) > result.getScoreError() + before[1];
+            String verdict = "";
+            if (beyondError && change > thresholdPercent) {
+                verdict = "  REGRESSION";
+                regressions++;
+            } else if (beyondError && change < -thresholdPercent) {
+                verdict = "  improved";
+            }
+            System.out.printf("%-45s %-28s %14.3f %14.3f %+8.1f%%%s%n", result.benchmark,
+                    result.params.values(), before[0], result.getScore(), change, verdict);
+        }
+        return regressions;
+    }
+
+
+    private String toJson(Result result) {
+        return "{\"benchmark\" : \"" + result.benchmark + "\", " +
+                "\"mode\" : \"avgt\", \"threads\" : 1, \"forks\" : 1, " +
+                "\"jvm\" : \"" + escape(System.getProperty("java.home")) + "\", " +
+                "\"jdkVersion\" : \"" + escape(System.getProperty("java.version")) + "\", " +
+                "\"warmupIterations\" : " + warmupIterations + ", " +
+                "\"warmupTime\" : \"" + iterationSeconds + " s\", " +
+                "\"measurementIterations\" : " + measurementIterations + ", " +
+                "\"measurementTime\" : \"" + iterationSeconds + " s\", " +
+                "\"params\" : " + paramsJson(result.params) + ", " +
+                "\"primaryMetric\" : {\"score\" : " + result.getScore() + ", " +
+                "\"scoreError\" : " + result.getScoreError() + ", " +
+                "\"scoreConfidence\" : [" + (result.getScore() - result.getScoreError()) + ", " +
+                (result.getScore() + result.getScoreError()) + "], " +
+                "\"scoreUnit\" : \"ns/op\", \"rawData\" : [" + joinArray(result.nanosPerOp) + "]}, " +
+                "\"secondaryMetrics\" : {\"gc.alloc.rate.norm\" : {\"score\" : " + result.getBytesPerOp() + ", " +
+                "\"scoreError\" : " + error(result.bytesPerOp) + ", " +
+                "\"scoreUnit\" : \"B/op\", \"rawData\" : [" + joinArray(result.bytesPerOp) + "]}}}";
+    }
+
+
+    private static String paramsJson(Map<String, Integer> params) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Integer> param : params.entrySet()) {
+            if (json.length() > 1) {
+                json.append(", ");
+            }
+            json.append('"').append(param.getKey()).append("\" : \"").append(param.getValue()).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+
+    private static String joinArray(double[] values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            json.append(i > 0 ? ", " : "").append(values[i]);
+        }
+        return json.append(']').toString();
+    }
+
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+
+    /**
+     * Score and error of every result in a file written by writeJson, keyed by benchmark and params
+     */
+    private static Map<String, double[]> readScores(String file) throws IOException {
+        Map<String, double[]> scores = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Matcher benchmark = BENCHMARK.matcher(line);
+                Matcher params = PARAMS.matcher(line);
+                Matcher primary = PRIMARY.matcher(line);
+                if (benchmark.find() && params.find() && primary.find()) {
+                    scores.put(benchmark.group(1) + params.group(1), new double[]{
+                            Double.parseDouble(primary.group(1)), Double.parseDouble(primary.group(2))});
+                }
+            }
+        }
+        return scores;
+    }
+
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+
+    /**
+     * Half-width of the 99.9% confidence interval of the mean, as JMH reports it
+     * Above ten degrees of freedom the t value for ten is used, which errs wide
+     */
+    private static double error(double[] values) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double standardError = Math.sqrt(squares / (values.length - 1) / values.length);
+        return T_999[Math.min(values.length - 1, T_999.length) - 1] * standardError;
+    }
+
+
+    public static class Result {
+        private final String benchmark;
+        private final Map<String, Integer> params;
+        private final double[] nanosPerOp;
+        private final double[] bytesPerOp;
+
+        private Result(String benchmark, Map<String, Integer> params, double[] nanosPerOp, double[] bytesPerOp) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public double getScore() {
+            return mean(nanosPerOp);
+        }
+
+        public double getScoreError() {
+            return error(nanosPerOp);
+        }
+
+        public double getBytesPerOp() {
+            return mean(bytesPerOp);
+        }
+    }
+}
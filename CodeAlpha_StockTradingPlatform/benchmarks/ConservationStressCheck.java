@@ -0,0 +1,226 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Multi-threaded stress check of the trading engine's bookkeeping
+ * Many tasks trade at once for a small set of users through trade() and
+ * atomic and non-atomic batches, so the same users and symbols
+ * are contended from several threads. Prices do not move during the run, so
+ * afterwards the users' cash plus the value of their holdings must equal the
+ * deposits, each symbol's shares must equal the net quantity of the executed
+ * trades, and the history must hold one transaction per executed trade. The
+ * checks are repeated on a platform reloaded from the same folder
+ *
+ * Run from the project folder after compiling src and benchmarks together:
+ * javac -encoding UTF-8 -d out src/*.java benchmarks/*.java
+ * java -cp out ConservationStressCheck [tasks] [operations per task]
+ *
+ * Exits with status 1 if a check fails
+ *
+ * @author Hend Okasha
+ */
+public class ConservationStressCheck {
+    private static final int USERS = 16;
+    private static final String[] SYMBOLS = {"AAA", "BBB", "CCC", "DDD"};
+    private static final double[] PRICES = {12.34, 56.78, 99.99, 3.21};
+    private static final double DEPOSIT = 100_000.00;
+    private static final int MAX_QUANTITY = 20;
+    private static final int MAX_BATCH = 5;
+    private static final long SEED = 42;
+
+    private final TradingPlatform platform;
+    private final User[] users;
+    // Net shares bought per symbol, and the number of executed trades, counted from the results
+    private final AtomicLongArray netShares;
+    private final AtomicLongArray executedTrades;
+
+    private ConservationStressCheck(TradingPlatform platform) {
+        this.platform = platform;
+        this.users = new User[USERS];
+        this.netShares = new AtomicLongArray(SYMBOLS.length);
+        this.executedTrades = new AtomicLongArray(1);
+
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            platform.addStock(new Stock(SYMBOLS[i], SYMBOLS[i] + " Corp", PRICES[i]));
+        }
+        for (int i = 0; i < USERS; i++) {
+            users[i] = platform.registerUser("stress" + i, DEPOSIT);
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int tasks = (args.length > 0) ? Integer.parseInt(args[0]) : 32;
+        int operations = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+        File dataDirectory = Files.createTempDirectory("stress-check").toFile();
+
+        boolean passed;
+        try {
+            ConservationStressCheck check = new ConservationStressCheck(new TradingPlatform(dataDirectory.getPath()));
+            long start = System.nanoTime();
+            check.run(tasks, operations);
+            System.out.printf("%d tasks x %d operations: %d trades executed in %.2f s%n", tasks, operations,
+                    check.executedTrades.get(0), (System.nanoTime() - start) / 1e9);
+
+            passed = check.verify(check.platform, "live");
+            check.platform.close();
+
+            TradingPlatform reloaded = new TradingPlatform(dataDirectory.getPath());
+            passed &= check.verify(reloaded, "reloaded");
+            reloaded.close();
+        } finally {
+            deleteAll(dataDirectory);
+        }
+
+        System.out.println(passed ? "All checks passed." : "Checks FAILED.");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+
+    private void run(int tasks, int operations) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < tasks; task++) {
+                Random random = new Random(SEED + task);
+                futures.add(executor.submit(() -> trade(random, operations)));
+            }
+            for (Future<?> future : futures) {
+                // Rethrows anything a task threw
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Random single trades and batches; sells often exceed the holding and are rejected
+     */
+    private void trade(Random random, int operations) {
+        TradeReceipt receipt = new TradeReceipt();
+        for (int i = 0; i < operations; i++) {
+            if (random.nextInt(4) == 0) {
+                List<TradeInstruction> instructions = new ArrayList<>();
+                int size = 2 + random.nextInt(MAX_BATCH - 1);
+                for (int j = 0; j < size; j++) {
+                    instructions.add(new TradeInstruction(randomUser(random), randomSymbol(random),
+                            randomSide(random), 1 + random.nextInt(MAX_QUANTITY)));
+                }
+                for (TradeResult result : platform.executeBatch(instructions, random.nextBoolean())) {
+                    count(result);
+                }
+            } else {
+                platform.trade(randomUser(random), platform.getStockBySymbol(randomSymbol(random)),
+                        randomSide(random), 1 + random.nextInt(MAX_QUANTITY), Quote.ANY_VERSION, receipt);
+                if (receipt.isExecuted()) {
+                    count(receipt.getSymbol(), receipt.getType(), receipt.getQuantity());
+                }
+            }
+        }
+    }
+
+
+    private void count(TradeResult result) {
+        if (result.isExecuted()) {
+            Transaction transaction = result.getTransaction();
+            count(transaction.getSymbol(), transaction.getType(), transaction.getQuantity());
+        }
+    }
+
+
+    private void count(String symbol, TransactionType type, int quantity) {
+        netShares.addAndGet(symbolIndex(symbol), type == TransactionType.BUY ? quantity : -quantity);
+        executedTrades.incrementAndGet(0);
+    }
+
+
+    private boolean verify(TradingPlatform checked, String label) {
+        boolean passed = true;
+        long[] shares = new long[SYMBOLS.length];
+        long total = 0;
+
+        for (User stored : users) {
+            User user = checked.getUserByUsername(stored.getUsername());
+            if (user == null) {
+                System.out.println(label + ": user " + stored.getUsername() + " is missing");
+                return false;
+            }
+            total += user.getBalanceMicros();
+            for (StockHolding holding : user.getPortfolio()) {
+                int symbol = symbolIndex(holding.getSymbol());
+                shares[symbol] += holding.getQuantity();
+                total += holding.getQuantity() * Money.fromDouble(PRICES[symbol]);
+            }
+        }
+
+        long deposits = USERS * Money.fromDouble(DEPOSIT);
+        if (total != deposits) {
+            System.out.println(label + ": cash plus holdings is " + Money.format(total) +
+                    ", deposits were " + Money.format(deposits));
+            passed = false;
+        }
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            if (shares[i] != netShares.get(i)) {
+                System.out.println(label + ": " + SYMBOLS[i] + " holdings total " + shares[i] +
+                        " shares, executed trades net " + netShares.get(i));
+                passed = false;
+            }
+        }
+        if (checked.getTransactions().size() != executedTrades.get(0)) {
+            System.out.println(label + ": history holds " + checked.getTransactions().size() +
+                    " transactions, " + executedTrades.get(0) + " trades executed");
+            passed = false;
+        }
+
+        System.out.println(label + ": " + (passed ? "conserved" : "NOT conserved"));
+        return passed;
+    }
+
+
+    private User randomUser(Random random) {
+        return users[random.nextInt(USERS)];
+    }
+
+
+    private static String randomSymbol(Random random) {
+        return SYMBOLS[random.nextInt(SYMBOLS.length)];
+    }
+
+
+    private static TransactionType randomSide(Random random) {
+        return random.nextBoolean() ? TransactionType.BUY : TransactionType.SELL;
+    }
+
+
+    private static int symbolIndex(String symbol) {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            if (SYMBOLS[i].equals(symbol)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown symbol " + symbol);
+    }
+
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,154 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Compares the cost of settling trades with Money micro-units against double and BigDecimal
+ * Each operation prices a trade (price x quantity), debits the buyer and credits
+ * the seller, as the trading engine does. Reports time and heap allocated per
+ * operation, and the final buyer balance so the drift of double is visible
+ *
+ * Run from the project folder after compiling src and benchmarks together:
+ * javac -encoding UTF-8 -d out src/*.java benchmarks/*.java
+ * java -cp out MoneyBenchmark [operations]
+ *
+ * @author Hend Okasha
+ */
+public class MoneyBenchmark {
+    private static final int PRICE_COUNT = 1024;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private final long[] priceMicros = new long[PRICE_COUNT];
+    private final double[] priceDoubles = new double[PRICE_COUNT];
+    private final BigDecimal[] priceDecimals = new BigDecimal[PRICE_COUNT];
+    private final int[] quantities = new int[PRICE_COUNT];
+    private double sellerBalance;
+
+
+    public static void main(String[] args) {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+        MoneyBenchmark benchmark = new MoneyBenchmark(42);
+
+        System.out.printf("%-12s %12s %14s %22s%n", "Type", "ns/op", "bytes/op", "Buyer balance");
+        for (String type : new String[]{"long", "double", "BigDecimal"}) {
+            benchmark.run(type, operations);
+        }
+    }
+
+
+    private MoneyBenchmark(long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < PRICE_COUNT; i++) {
+            // Cent prices between 1.00 and 500.00, the way the order book quotes them
+            long cents = 100 + random.nextInt(49_901);
+            priceMicros[i] = cents * (Money.SCALE / 100);
+            priceDoubles[i] = cents / 100.0;
+            priceDecimals[i] = BigDecimal.valueOf(cents, 2);
+            quantities[i] = 1 + random.nextInt(100);
+        }
+    }
+
+
+    private void run(String type, int operations) {
+        String balance = null;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            balance = settle(type, operations / 10);
+        }
+
+        long bytes = 0;
+        long nanos = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            balance = settle(type, operations);
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - bytesBefore;
+        }
+
+        long total = (long) operations * MEASURED_ROUNDS;
+        System.out.printf("%-12s %12.2f %14.2f %22s%n", type, (double) nanos / total,
+                (double) bytes / total, balance);
+    }
+
+
+    /**
+     * Settles the given number of trades and returns the buyer's final balance
+     * Trades alternate direction every PRICE_COUNT operations; the long and BigDecimal
+     * results are exact, so any difference in the double result is rounding drift
+     */
+    private String settle(String type, int operations) {
+        switch (type) {
+            case "long":
+                return Money.format(settleMicros(operations));
+            case "double":
+                return Double.toString(settleDoubles(operations));
+            default:
+                return settleDecimals(operations).toPlainString();
+        }
+    }
+
+
+    private long settleMicros(int operations) {
+        long buyer = Money.ofUnits(1_000_000);
+        long seller = Money.ofUnits(1_000_000);
+        for (int i = 0; i < operations; i++) {
+            int slot = i & (PRICE_COUNT - 1);
+            long amount = Money.multiply(priceMicros[slot], quantities[slot]);
+            if ((i & PRICE_COUNT) == 0) {
+                buyer = Money.subtract(buyer, amount);
+                seller = Money.add(seller, amount);
+            } else {
+                buyer = Money.add(buyer, amount);
+                seller = Money.subtract(seller, amount);
+            }
+        }
+        sellerBalance = Money.toDouble(seller);
+        return buyer;
+    }
+
+
+    private double settleDoubles(int operations) {
+        double buyer = 1_000_000;
+        double seller = 1_000_000;
+        for (int i = 0; i < operations; i++) {
+            int slot = i & (PRICE_COUNT - 1);
+            double amount = priceDoubles[slot] * quantities[slot];
+            if ((i & PRICE_COUNT) == 0) {
+                buyer -= amount;
+                seller += amount;
+            } else {
+                buyer += amount;
+                seller -= amount;
+            }
+        }
+        sellerBalance = seller;
+        return buyer;
+    }
+
+
+    private BigDecimal settleDecimals(int operations) {
+        BigDecimal buyer = BigDecimal.valueOf(1_000_000);
+        BigDecimal seller = BigDecimal.valueOf(1_000_000);
+        for (int i = 0; i < operations; i++) {
+            int slot = i & (PRICE_COUNT - 1);
+            BigDecimal amount = priceDecimals[slot].multiply(BigDecimal.valueOf(quantities[slot]));
+            if ((i & PRICE_COUNT) == 0) {
+                buyer = buyer.subtract(amount);
+                seller = seller.add(amount);
+            } else {
+                buyer = buyer.add(amount);
+                seller = seller.subtract(amount);
+            }
+        }
+        sellerBalance = seller.doubleValue();
+        return buyer.setScale(2, RoundingMode.UNNECESSARY);
+    }
+
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+/**
+ * Measures the steady-state cost of the primitive trade path
+ * One user alternately buys and sells a share of a position it keeps open, through
+ * TradingPlatform.trade with a single reused receipt, so every operation runs the
+ * full trade: validation, settlement, store append, history index and journal write.
+ * Reports time and heap allocated per operation for executed and rejected trades
+ * The platform uses its default checkpoint settings, so time spent waiting for
+ * background snapshots is included; their allocations are on another thread
+ *
+ * Run from the project folder after compiling src and benchmarks together:
+ * javac -encoding UTF-8 -d out src/*.java benchmarks/*.java
+ * java -cp out TradeHotPathBenchmark [operations]
+ *
+ * @author Hend Okasha
+ */
+public class TradeHotPathBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private final TradingPlatform platform;
+    private final User user;
+    private final Stock stock;
+    private final TradeReceipt receipt = new TradeReceipt();
+
+
+    public static void main(String[] args) throws IOException {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        File dataDirectory = Files.createTempDirectory("trade-bench").toFile();
+        try {
+            TradeHotPathBenchmark benchmark = new TradeHotPathBenchmark(dataDirectory, operations);
+
+            System.out.printf("%-10s %12s %14s%n", "Path", "ns/op", "bytes/op");
+            benchmark.run("executed", operations);
+            benchmark.run("rejected", operations);
+            benchmark.platform.close();
+        } finally {
+            deleteAll(dataDirectory);
+        }
+    }
+
+
+    private TradeHotPathBenchmark(File dataDirectory, int operations) {
+        // Default configuration, so background checkpoints run during the measurement
+        platform = new TradingPlatform(dataDirectory.getPath());
+        platform.addStock(new Stock("BENCH", "Benchmark Corp", 50.00));
+        stock = platform.getStockBySymbol("BENCH");
+        user = platform.registerUser("bench", 1_000_000_000);
+
+        long executedTrades = (long) operations * (WARMUP_ROUNDS + MEASURED_ROUNDS) + 1;
+        platform.reserveHistory(user, (int) Math.min(executedTrades, Integer.MAX_VALUE));
+        trade(TransactionType.BUY, 100);
+    }
+
+
+    private void run(String path, int operations) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            execute(path, operations);
+        }
+
+        long bytes = 0;
+        long nanos = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            execute(path, operations);
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - bytesBefore;
+        }
+
+        long total = (long) operations * MEASURED_ROUNDS;
+        System.out.printf("%-10s %12.2f %14.2f%n", path, (double) nanos / total, (double) bytes / total);
+    }
+
+
+    /**
+     * Executed trades alternate a one-share buy and sell; rejected trades try to
+     * sell far more shares than the user holds
+     */
+    private void execute(String path, int operations) {
+        boolean executed = path.equals("executed");
+        for (int i = 0; i < operations; i++) {
+            if (executed) {
+                trade((i & 1) == 0 ? TransactionType.BUY : TransactionType.SELL, 1);
+            } else if (platform.trade(user, stock, TransactionType.SELL, Integer.MAX_VALUE,
+                    Quote.ANY_VERSION, receipt) == TradeCode.EXECUTED) {
+                throw new IllegalStateException("Oversized sale was executed");
+            }
+        }
+    }
+
+
+    private void trade(TransactionType side, int quantity) {
+        if (platform.trade(user, stock, side, quantity, Quote.ANY_VERSION, receipt) != TradeCode.EXECUTED) {
+            throw new IllegalStateException(receipt.getMessage());
+        }
+    }
+
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
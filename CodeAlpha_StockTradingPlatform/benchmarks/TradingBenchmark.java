@@ -0,0 +1,452 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Baseline benchmarks of the trading engine over generated datasets
+ * Each dataset is written as CSV files, imported into a platform in a temporary
+ * folder and then exercised through the public API: trades, lookups, valuation,
+ * history, a market update, and the save and load paths. Every benchmark runs
+ * warm-up and measured iterations of a fixed duration and reports the average
+ * time and heap bytes allocated per operation. Results are printed, written as
+ * JSON and optionally compared with an earlier JSON file
+ *
+ * Run from the project folder after compiling src and benchmarks together:
+ * javac -encoding UTF-8 -d out src/*.java benchmarks/*.java
+ * java -Xmx4g -cp out TradingBenchmark [options] [benchmark regex...]
+ *
+ * Options (JMH style):
+ * -p size=10,1000     users, stocks and transactions of each dataset (default 10,1000,100000,1000000)
+ * -p users=10,1000    also stocks= and transactions=: vary one dimension independently of size
+ * -wi 3 -i 5 -r 1     warm-up iterations, measured iterations, seconds per iteration
+ * -rff file.json      JSON result file (default benchmark-results.json)
+ * -baseline file.json compare with an earlier result file; exits with status 1 on a regression
+ * -threshold 10       percent slowdown that counts as a regression (default 10)
+ *
+ * @author Hend Okasha
+ */
+public class TradingBenchmark {
+    private static final String[] BENCHMARKS = {
+            "getStockBySymbol", "calculatePortfolioPerformance", "getUserTransactions",
+            "updateMarketPrices", "checkpoint", "exportCsv", "loadSnapshot", "loadCsv",
+            // Trades add transactions, so they run last and the load and save paths see the generated sizes
+            "buyStock", "sellStock"
+    };
+    private static final String[] CSV_FILES = {"stocks.txt", "users.txt", "holdings.txt", "transactions.txt"};
+    private static final int[] DEFAULT_SIZES = {10, 1_000, 100_000, 1_000_000};
+    private static final int RANDOM_SLOTS = 4096;
+    private static final long SEED = 42;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final BenchmarkReport report;
+
+    // Per-dataset state
+    private BenchmarkDataset dataset;
+    private File dataDirectory;
+    private TradingPlatform platform;
+    private MarketDataService marketService;
+    private User[] users;
+    private String[] symbols;
+    private int[] randomUsers;
+    private int[] randomStocks;
+    private long sink;
+
+
+    public static void main(String[] args) throws IOException {
+        Map<String, int[]> params = new LinkedHashMap<>();
+        List<Pattern> filters = new ArrayList<>();
+        int warmupIterations = 3;
+        int measurementIterations = 5;
+        double iterationSeconds = 1;
+        String resultFile = "benchmark-results.json";
+        String baselineFile = null;
+        double threshold = 10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p":
+                    String[] param = args[++i].split("=", 2);
+                    params.put(param[0], parseSizes(param[1]));
+                    break;
+                case "-wi":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    measurementIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    iterationSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "-rff":
+                    resultFile = args[++i];
+                    break;
+                case "-baseline":
+                    baselineFile = args[++i];
+                    break;
+                case "-threshold":
+                    threshold = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    filters.add(Pattern.compile(args[i]));
+            }
+        }
+
+        BenchmarkReport report = new BenchmarkReport("TradingBenchmark",
+                warmupIterations, measurementIterations, iterationSeconds);
+        TradingBenchmark benchmark = new TradingBenchmark(warmupIterations, measurementIterations,
+                iterationSeconds, report);
+
+        // Sizes move together unless a dimension is given on its own
+        for (int size : params.getOrDefault("size", DEFAULT_SIZES)) {
+            for (int users : params.getOrDefault("users", new int[]{size})) {
+                for (int stocks : params.getOrDefault("stocks", new int[]{size})) {
+                    for (int transactions : params.getOrDefault("transactions", new int[]{size})) {
+                        benchmark.runDataset(new BenchmarkDataset(users, stocks, transactions, SEED), filters);
+                    }
+                }
+            }
+        }
+
+        report.printTable();
+        report.writeJson(resultFile);
+        System.out.println("\nResults written to " + resultFile);
+
+        if (baselineFile != null && report.compareWith(baselineFile, threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+
+    private TradingBenchmark(int warmupIterations, int measurementIterations, double iterationSeconds,
+                             BenchmarkReport report) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = (long) (iterationSeconds * 1e9);
+        this.report = report;
+    }
+
+
+    private void runDataset(BenchmarkDataset dataset, List<Pattern> filters) throws IOException {
+        System.out.println("\n# Dataset: " + dataset);
+        this.dataset = dataset;
+        dataDirectory = Files.createTempDirectory("trading-bench").toFile();
+        try {
+            dataset.writeCsv(dataDirectory);
+            pickSamples();
+
+            for (String name : BENCHMARKS) {
+                if (!matches(name, filters)) {
+                    continue;
+                }
+                if (name.startsWith("load")) {
+                    releasePlatform();
+                } else if (platform == null) {
+                    openPlatform();
+                }
+                run(name);
+            }
+        } finally {
+            closePlatform();
+            deleteAll(dataDirectory);
+        }
+    }
+
+
+    /**
+     * Picks the users and stocks the benchmarks draw from
+     */
+    private void pickSamples() {
+        symbols = new String[dataset.getStocks()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = dataset.symbol(i);
+        }
+
+        Random random = new Random(SEED);
+        randomUsers = new int[RANDOM_SLOTS];
+        randomStocks = new int[RANDOM_SLOTS];
+        for (int i = 0; i < RANDOM_SLOTS; i++) {
+            randomUsers[i] = random.nextInt(dataset.getUsers());
+            randomStocks[i] = random.nextInt(dataset.getStocks());
+        }
+    }
+
+
+    /**
+     * Loads the dataset folder: the CSV import at first, the snapshot once one exists
+     */
+    private void openPlatform() {
+        // No automatic checkpoints: snapshots are measured on their own by the checkpoint benchmark
+        platform = new TradingPlatform(dataDirectory.getPath(), Integer.MAX_VALUE);
+        marketService = new MarketDataService(1);
+
+        users = new User[dataset.getUsers()];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = platform.getUserById(dataset.userId(i));
+        }
+    }
+
+
+    /**
+     * Leaves a snapshot of the current state in the folder and frees the platform,
+     * so the load benchmarks never hold two copies of a large dataset
+     */
+    private void releasePlatform() {
+        if (platform == null && new File(dataDirectory, "snapshot.bin").exists()) {
+            return;
+        }
+        if (platform == null) {
+            openPlatform();
+        }
+        platform.checkpoint();
+        closePlatform();
+        System.gc();
+    }
+
+
+    private void closePlatform() {
+        if (platform != null) {
+            platform.close();
+            platform = null;
+        }
+        marketService = null;
+        users = null;
+    }
+
+
+    private void run(String name) throws IOException {
+        System.out.printf("%-32s", name);
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            iterate(name);
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        double[] bytesPerOp = new double[measurementIterations];
+        for (int iteration = 0; iteration < measurementIterations; iteration++) {
+            Measurement measurement = iterate(name);
+            nanosPerOp[iteration] = (double) measurement.nanos / measurement.operations;
+            bytesPerOp[iteration] = (double) measurement.bytes / measurement.operations;
+        }
+
+        BenchmarkReport.Result result = report.add(name, datasetParams(), nanosPerOp, bytesPerOp);
+        System.out.printf("%14.3f ns/op %12.1f B/op%n", result.getScore(), result.getBytesPerOp());
+    }
+
+
+    /**
+     * Runs batches of operations, doubling the batch size, until the measured time fills an iteration
+     */
+    private Measurement iterate(String name) throws IOException {
+        Measurement measurement = new Measurement();
+        int batch = 1;
+        while (measurement.nanos < iterationNanos) {
+            long before = measurement.nanos;
+            runBatch(name, batch, measurement);
+            if (measurement.nanos - before < iterationNanos / 10 && batch < (1 << 24)) {
+                batch *= 2;
+            }
+        }
+        return measurement;
+    }
+
+
+    private void runBatch(String name, int count, Measurement measurement) throws IOException {
+        switch (name) {
+            case "getStockBySymbol":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    Stock stock = platform.getStockBySymbol(symbols[randomStocks[i & (RANDOM_SLOTS - 1)]]);
+                    sink += stock.getCurrentPriceMicros();
+                }
+                measurement.stop(count);
+                break;
+
+            case "calculatePortfolioPerformance":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    sink += (long) platform.calculatePortfolioPerformance(nextUser(i))[1];
+                }
+                measurement.stop(count);
+                break;
+
+            case "getUserTransactions":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    sink += platform.getUserTransactions(nextUser(i).getUserId()).size();
+                }
+                measurement.stop(count);
+                break;
+
+            case "updateMarketPrices":
+                // One operation moves every stock once
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    marketService.updateMarketPrices(platform.getStocks());
+                }
+                measurement.stop(count);
+                break;
+
+            case "buyStock":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    String symbol = symbols[randomStocks[(i * 7) & (RANDOM_SLOTS - 1)]];
+                    sink += platform.buyStock(nextUser(i), symbol, 1).getTransactionId();
+                }
+                measurement.stop(count);
+                break;
+
+            case "sellStock":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    int userIndex = randomUsers[i & (RANDOM_SLOTS - 1)];
+                    String symbol = symbols[dataset.heldStock(userIndex, i % dataset.holdingsPerUser())];
+                    sink += platform.sellStock(users[userIndex], symbol, 1).getTransactionId();
+                }
+                measurement.stop(count);
+                break;
+
+            case "checkpoint":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    platform.checkpoint();
+                }
+                measurement.stop(count);
+                break;
+
+            case "exportCsv":
+                measurement.start();
+                for (int i = 0; i < count; i++) {
+                    platform.exportCsv();
+                }
+                measurement.stop(count);
+                break;
+
+            case "loadSnapshot":
+                loadSnapshot(count, measurement);
+                break;
+
+            case "loadCsv":
+                loadCsv(count, measurement);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + name);
+        }
+    }
+
+
+    /**
+     * Startup from the snapshot and transaction store of the released platform
+     */
+    private void loadSnapshot(int count, Measurement measurement) {
+        for (int i = 0; i < count; i++) {
+            measurement.start();
+            TradingPlatform loaded = new TradingPlatform(dataDirectory.getPath(), Integer.MAX_VALUE);
+            measurement.stop(1);
+            loaded.close();
+        }
+    }
+
+
+    /**
+     * Startup that imports the CSV files into an empty folder; copying the files is not timed
+     */
+    private void loadCsv(int count, Measurement measurement) throws IOException {
+        for (int i = 0; i < count; i++) {
+            File importDirectory = Files.createTempDirectory(dataDirectory.toPath(), "import").toFile();
+            for (String name : CSV_FILES) {
+                Files.copy(new File(dataDirectory, name).toPath(), new File(importDirectory, name).toPath());
+            }
+
+            measurement.start();
+            TradingPlatform loaded = new TradingPlatform(importDirectory.getPath(), Integer.MAX_VALUE);
+            measurement.stop(1);
+            loaded.close();
+            deleteAll(importDirectory);
+        }
+    }
+
+
+    private User nextUser(int i) {
+        return users[randomUsers[i & (RANDOM_SLOTS - 1)]];
+    }
+
+
+    private Map<String, Integer> datasetParams() {
+        Map<String, Integer> params = new LinkedHashMap<>();
+        params.put("users", dataset.getUsers());
+        params.put("stocks", dataset.getStocks());
+        params.put("transactions", dataset.getTransactions());
+        return params;
+    }
+
+
+    private static boolean matches(String name, List<Pattern> filters) {
+        if (filters.isEmpty()) {
+            return true;
+        }
+        for (Pattern filter : filters) {
+            if (filter.matcher(name).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static int[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim().replace("_", ""));
+        }
+        return sizes;
+    }
+
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+
+    /**
+     * Time and heap allocation of the timed sections of one iteration
+     */
+    private static class Measurement {
+        private long nanos;
+        private long bytes;
+        private long operations;
+        private long startNanos;
+        private long startBytes;
+
+        void start() {
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void stop(int count) {
+            nanos += System.nanoTime() - startNanos;
+            bytes += allocatedBytes() - startBytes;
+            operations += count;
+        }
+
+        private static long allocatedBytes() {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
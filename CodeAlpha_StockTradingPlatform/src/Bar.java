@@ -0,0 +1,75 @@
+/**
+ * One OHLCV bar of a symbol's price history
+ * Volume is the number of price ticks that fell in the bar
+ *
+ * @author Hend Okasha
+ */
+public class Bar {
+    private final String symbol;
+    private final BarInterval interval;
+    private final long startMillis;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final long volume;
+
+
+    public Bar(String symbol, BarInterval interval, long startMillis,
+               double open, double high, double low, double close, long volume) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.startMillis = startMillis;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public BarInterval getInterval() {
+        return interval;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getClose() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    @Override
+    public String toString() {
+        return "Bar{" +
+                "symbol='" + symbol + '\'' +
+                ", interval=" + interval +
+                ", startMillis=" + startMillis +
+                ", open=" + open +
+                ", high=" + high +
+                ", low=" + low +
+                ", close=" + close +
+                ", volume=" + volume +
+                '}';
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds second, minute, hour and day OHLCV bars from price ticks
+ * Each tick updates the open bar of every interval in place, so the cost per
+ * tick is constant and history memory is bounded by the interval capacities
+ *
+ * @author Hend Okasha
+ */
+public class BarAggregator implements QuoteSink {
+    private static final BarInterval[] INTERVALS = BarInterval.values();
+
+    private final Map<String, BarSeries[]> seriesBySymbol;
+
+    public BarAggregator() {
+        this.seriesBySymbol = new ConcurrentHashMap<>();
+    }
+
+
+    @Override
+    public void onQuote(Quote quote) {
+        addTick(quote.getSymbol(), quote.getTimestampMillis(), quote.getPrice());
+    }
+
+
+    public void addTick(String symbol, long timestampMillis, double price) {
+        String key = normalizeSymbol(symbol);
+        BarSeries[] series = seriesBySymbol.get(key);
+        if (series == null) {
+            series = seriesBySymbol.computeIfAbsent(key, BarAggregator::createSeries);
+        }
+
+        for (BarSeries bars : series) {
+            bars.addTick(timestampMillis, price);
+        }
+    }
+
+
+    /**
+     * Up to the last n bars of the symbol, oldest first
+     */
+    public List<Bar> getBars(String symbol, BarInterval interval, int n) {
+        BarSeries[] series = seriesBySymbol.get(normalizeSymbol(symbol));
+        if (series == null) {
+            return Collections.emptyList();
+        }
+        return series[interval.ordinal()].getLast(n);
+    }
+
+
+    private static BarSeries[] createSeries(String symbol) {
+        BarSeries[] series = new BarSeries[INTERVALS.length];
+        for (BarInterval interval : INTERVALS) {
+            series[interval.ordinal()] = new BarSeries(symbol, interval, interval.getCapacity());
+        }
+        return series;
+    }
+
+
+    private static String normalizeSymbol(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+}
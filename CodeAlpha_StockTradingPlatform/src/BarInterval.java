@@ -0,0 +1,35 @@
+/**
+ * Enumeration for OHLCV bar lengths, with how many bars of each are kept per symbol
+ *
+ * @author Hend Okasha
+ */
+public enum BarInterval {
+    SECOND(1_000L, 300),
+    MINUTE(60_000L, 480),
+    HOUR(3_600_000L, 720),
+    DAY(86_400_000L, 365);
+
+    private final long millis;
+    private final int capacity;
+
+    BarInterval(long millis, int capacity) {
+        this.millis = millis;
+        this.capacity = capacity;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Start of the bar containing the timestamp; bars are aligned to the UTC epoch
+     */
+    public long barStart(long timestampMillis) {
+        return timestampMillis - Math.floorMod(timestampMillis, millis);
+    }
+}
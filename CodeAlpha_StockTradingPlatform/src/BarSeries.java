@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ring buffer of OHLCV bars for one symbol and one interval
+ * Bars are stored column-wise in primitive arrays; the arrays start small and
+ * double as history accumulates, up to the interval's capacity, after which
+ * the oldest bar is overwritten. Intervals without ticks produce no bar
+ *
+ * @author Hend Okasha
+ */
+public class BarSeries {
+    private static final int INITIAL_CAPACITY = 2;
+
+    private final String symbol;
+    private final BarInterval interval;
+    private final int capacity;
+    private long[] starts;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private long[] volumes;
+    private int newest;
+    private int count;
+
+    public BarSeries(String symbol, BarInterval interval, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.symbol = symbol;
+        this.interval = interval;
+        this.capacity = capacity;
+        allocate(Math.min(INITIAL_CAPACITY, capacity));
+        this.newest = -1;
+    }
+
+
+    /**
+     * Adds a price tick to the bar it falls in
+     * Ticks older than the newest bar are folded into it rather than rewriting history
+     */
+    public synchronized void addTick(long timestampMillis, double price) {
+        long start = interval.barStart(timestampMillis);
+
+        if (count > 0 && start <= starts[newest]) {
+            highs[newest] = Math.max(highs[newest], price);
+            lows[newest] = Math.min(lows[newest], price);
+            closes[newest] = price;
+            volumes[newest]++;
+            return;
+        }
+
+        if (count == starts.length && count < capacity) {
+            grow();
+        }
+        newest = (newest + 1) % starts.length;
+        if (count < starts.length) {
+            count++;
+        }
+
+        starts[newest] = start;
+        opens[newest] = price;
+        highs[newest] = price;
+        lows[newest] = price;
+        closes[newest] = price;
+        volumes[newest] = 1;
+    }
+
+
+    /**
+     * Up to the last n bars, oldest first; the newest bar may still be in progress
+     */
+    public synchronized List<Bar> getLast(int n) {
+        int size = Math.max(0, Math.min(n, count));
+        List<Bar> bars = new ArrayList<>(size);
+
+        for (int i = size - 1; i >= 0; i--) {
+            int index = Math.floorMod(newest - i, starts.length);
+            bars.add(new Bar(symbol, interval, starts[index],
+                    opens[index], highs[index], lows[index], closes[index], volumes[index]));
+        }
+        return bars;
+    }
+
+
+    public synchronized int size() {
+        return count;
+    }
+
+
+    private void allocate(int length) {
+        starts = new long[length];
+        opens = new double[length];
+        highs = new double[length];
+        lows = new double[length];
+        closes = new double[length];
+        volumes = new long[length];
+    }
+
+
+    /**
+     * Only called while the ring is full but below capacity, when it has never
+     * wrapped, so the bars are already in order from index 0
+     */
+    private void grow() {
+        int length = Math.min(starts.length * 2, capacity);
+        starts = Arrays.copyOf(starts, length);
+        opens = Arrays.copyOf(opens, length);
+        highs = Arrays.copyOf(highs, length);
+        lows = Arrays.copyOf(lows, length);
+        closes = Arrays.copyOf(closes, length);
+        volumes = Arrays.copyOf(volumes, length);
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latest-quote cache for consumers that read market data at their own pace
+ * Every symbol gets a slot holding its latest quote and a bit in a dirty bitmap;
+ * publishing overwrites the slot and sets the bit, and draining clears the bitmap
+ * word by word and returns each changed symbol's latest quote once, however many
+ * ticks it took since the last drain. Publishing allocates nothing once a symbol
+ * has been seen. Each consumer drains its own cache; symbols beyond the
+ * capacity are dropped and counted
+ *
+ * @author Hend Okasha
+ */
+public class ConflatingQuoteCache implements QuoteSink {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int NO_SLOT = -1;
+
+    private final int capacity;
+    private final Map<String, Integer> symbolSlots;
+    private final AtomicInteger nextSlot;
+    private final AtomicReferenceArray<Quote> latest;
+    private final AtomicLongArray dirty;
+    private final LongAdder droppedCount;
+
+    public ConflatingQuoteCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConflatingQuoteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.symbolSlots = new ConcurrentHashMap<>();
+        this.nextSlot = new AtomicInteger();
+        this.latest = new AtomicReferenceArray<>(capacity);
+        this.dirty = new AtomicLongArray((capacity + 63) >>> 6);
+        this.droppedCount = new LongAdder();
+    }
+
+
+    /**
+     * Stores the quote as its symbol's latest and marks the symbol changed
+     */
+    @Override
+    public void onQuote(Quote quote) {
+        int slot = slotOf(quote.getSymbol());
+        if (slot == NO_SLOT) {
+            droppedCount.increment();
+            return;
+        }
+
+        // Keep the newer quote if publishers race on the same symbol
+        Quote current;
+        do {
+            current = latest.get(slot);
+            if (current != null && current.getVersion() >= quote.getVersion()) {
+                break;
+            }
+        } while (!latest.compareAndSet(slot, current, quote));
+
+        // The slot is written before the bit, so a drain that sees the bit sees the quote
+        int word = slot >>> 6;
+        long bit = 1L << (slot & 63);
+        long bits;
+        do {
+            bits = dirty.get(word);
+            if ((bits & bit) != 0) {
+                return;
+            }
+        } while (!dirty.compareAndSet(word, bits, bits | bit));
+    }
+
+
+    /**
+     * Passes the latest quote of every symbol changed since the previous drain to the sink
+     *
+     * @return the number of quotes drained
+     */
+    public int drain(QuoteSink sink) {
+        int drained = 0;
+        int words = (Math.min(nextSlot.get(), capacity) + 63) >>> 6;
+
+        for (int word = 0; word < words; word++) {
+            if (dirty.get(word) == 0) {
+                continue;
+            }
+
+            long bits = dirty.getAndSet(word, 0);
+            while (bits != 0) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                sink.onQuote(latest.get(slot));
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+
+    /**
+     * Latest quote seen for the symbol, or null; does not affect what the next drain returns
+     */
+    public Quote getLatest(String symbol) {
+        Integer slot = symbolSlots.get(symbol);
+        return (slot != null && slot < capacity) ? latest.get(slot) : null;
+    }
+
+
+    public boolean hasChanges() {
+        int words = (Math.min(nextSlot.get(), capacity) + 63) >>> 6;
+        for (int word = 0; word < words; word++) {
+            if (dirty.get(word) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    public int getSymbolCount() {
+        return Math.min(nextSlot.get(), capacity);
+    }
+
+
+    /**
+     * Number of quotes ignored because their symbol did not fit in the cache
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+
+    /**
+     * The symbol's slot, assigning the next free one on first sight; NO_SLOT once
+     * the cache is full, without remembering the symbol, so dropped symbols take no memory
+     */
+    private int slotOf(String symbol) {
+        Integer slot = symbolSlots.get(symbol);
+        if (slot != null) {
+            return slot;
+        }
+        if (nextSlot.get() >= capacity) {
+            return NO_SLOT;
+        }
+
+        slot = symbolSlots.computeIfAbsent(symbol, s -> {
+            int next = nextSlot.getAndUpdate(n -> n < capacity ? n + 1 : n);
+            return (next < capacity) ? next : null;
+        });
+        return (slot != null) ? slot : NO_SLOT;
+    }
+}
@@ -0,0 +1,43 @@
+import java.time.LocalDateTime;
+
+/**
+ * Allocation-free wall clock for trade timestamps
+ * Returns local wall-clock time as epoch nanoseconds, the encoding the
+ * TransactionStore uses, by adding System.nanoTime progress to a base read
+ * from LocalDateTime.now(). The base is re-read once a minute, so clock
+ * adjustments and time zone changes are picked up
+ *
+ * @author Hend Okasha
+ */
+public final class EpochClock {
+    private static final long RESYNC_NANOS = 60_000_000_000L;
+
+    private static volatile Base base = new Base();
+
+
+    private EpochClock() {
+    }
+
+
+    public static long nowNanos() {
+        Base current = base;
+        long elapsed = System.nanoTime() - current.nanoTime;
+        if (elapsed >= RESYNC_NANOS) {
+            current = new Base();
+            base = current;
+            elapsed = System.nanoTime() - current.nanoTime;
+        }
+        return current.epochNanos + elapsed;
+    }
+
+
+    private static final class Base {
+        final long epochNanos;
+        final long nanoTime;
+
+        Base() {
+            this.epochNanos = TransactionStore.toEpochNanos(LocalDateTime.now());
+            this.nanoTime = System.nanoTime();
+        }
+    }
+}
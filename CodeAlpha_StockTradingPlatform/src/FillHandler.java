@@ -0,0 +1,9 @@
+/**
+ * Settles a match found by an order book
+ * Called while the book is locked, once per fill, before either order is updated
+ *
+ * @author Hend Okasha
+ */
+public interface FillHandler {
+    FillOutcome onFill(Order incoming, Order resting, int quantity, long priceTicks);
+}
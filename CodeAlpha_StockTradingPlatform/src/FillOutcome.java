@@ -0,0 +1,10 @@
+/**
+ * Result of settling a single fill between two orders
+ *
+ * @author Hend Okasha
+ */
+public enum FillOutcome {
+    FILLED,
+    INCOMING_REJECTED,
+    RESTING_REJECTED
+}
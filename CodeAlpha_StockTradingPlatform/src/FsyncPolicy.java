@@ -0,0 +1,12 @@
+/**
+ * Enumeration for when the persistence writer forces journal writes to disk
+ * ALWAYS syncs after every batch, INTERVAL at most once per configured period,
+ * and NEVER leaves flushing to the operating system
+ *
+ * @author Hend Okasha
+ */
+public enum FsyncPolicy {
+    ALWAYS,
+    INTERVAL,
+    NEVER
+}
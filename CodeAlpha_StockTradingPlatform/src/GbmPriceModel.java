@@ -0,0 +1,37 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Geometric Brownian motion: log returns are normal with constant drift and volatility
+ * Drift is per second and volatility per square-root second
+ *
+ * @author Hend Okasha
+ */
+public class GbmPriceModel implements PriceModel {
+    private final SymbolParameter drift;
+    private final SymbolParameter volatility;
+
+    public GbmPriceModel(double drift, double volatility) {
+        this.drift = new SymbolParameter(drift);
+        this.volatility = new SymbolParameter(volatility);
+    }
+
+
+    public void setParameters(int symbolIndex, double drift, double volatility) {
+        this.drift.set(symbolIndex, drift);
+        this.volatility.set(symbolIndex, volatility);
+    }
+
+
+    @Override
+    public void advance(double[] prices, int[] symbolIndexes, int count, double dtSeconds,
+                        double[] shocks, RandomGenerator random) {
+        double sqrtDt = Math.sqrt(dtSeconds);
+
+        for (int i = 0; i < count; i++) {
+            int symbol = symbolIndexes[i];
+            double sigma = volatility.get(symbol);
+            double mu = drift.get(symbol);
+            prices[i] *= Math.exp((mu - 0.5 * sigma * sigma) * dtSeconds + sigma * sqrtDt * shocks[i]);
+        }
+    }
+}
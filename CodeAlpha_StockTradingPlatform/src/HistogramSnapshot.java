@@ -0,0 +1,58 @@
+/**
+ * Immutable copy of a LatencyHistogram
+ * Percentiles are reported as the highest value of the bucket they fall in,
+ * capped by the largest value recorded, so they never understate a latency
+ *
+ * @author Hend Okasha
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    HistogramSnapshot(long[] counts, long totalNanos, long maxNanos) {
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        this.counts = counts;
+        this.count = total;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return (count > 0) ? (double) totalNanos / count : 0;
+    }
+
+
+    /**
+     * Latency that the given percentage of recorded values do not exceed, or 0 if nothing was recorded
+     *
+     * @param percentile between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+}
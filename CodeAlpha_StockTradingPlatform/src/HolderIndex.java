@@ -0,0 +1,77 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Reverse index from a symbol to the users holding it
+ * Kept in step with every holding change, so finding a symbol's holders
+ * (for revaluation, risk checks or corporate actions) does not require
+ * scanning every user's portfolio
+ *
+ * @author Hend Okasha
+ */
+public class HolderIndex {
+    private final Map<String, Map<Integer, User>> holdersBySymbol;
+
+    public HolderIndex() {
+        this.holdersBySymbol = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Records whether the user now holds the symbol
+     */
+    public void update(User user, String symbol, boolean holds) {
+        String key = normalizeSymbol(symbol);
+
+        if (holds) {
+            holdersBySymbol.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>())
+                    .put(user.getUserId(), user);
+        } else {
+            holdersBySymbol.computeIfPresent(key, (k, holders) -> {
+                holders.remove(user.getUserId());
+                return holders.isEmpty() ? null : holders;
+            });
+        }
+    }
+
+
+    /**
+     * Read-only view of the symbol's holders in user ID order
+     */
+    public Collection<User> getHolders(String symbol) {
+        Map<Integer, User> holders = holdersBySymbol.get(normalizeSymbol(symbol));
+        if (holders == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(holders.values());
+    }
+
+
+    public int getHolderCount(String symbol) {
+        Map<Integer, User> holders = holdersBySymbol.get(normalizeSymbol(symbol));
+        return (holders != null) ? holders.size() : 0;
+    }
+
+
+    /**
+     * Symbols held by at least one user
+     */
+    public Set<String> getHeldSymbols() {
+        return Collections.unmodifiableSet(holdersBySymbol.keySet());
+    }
+
+
+    public void clear() {
+        holdersBySymbol.clear();
+    }
+
+
+    private static String normalizeSymbol(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+}
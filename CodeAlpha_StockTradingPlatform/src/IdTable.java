@@ -0,0 +1,90 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Lookup table for objects keyed by user or record ID
+ * IDs handed out by IdSequence are small and dense, so entries sit in an array
+ * indexed by ID and a lookup neither hashes nor boxes the key; IDs outside
+ * the dense range fall back to a hash map. Reads take no lock, inserts are
+ * serialized
+ *
+ * @author Hend Okasha
+ */
+public class IdTable<T> {
+    private static final int MAX_DENSE_ID = 1 << 24;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<T> slots;
+    private final Map<Integer, T> sparse;
+
+    public IdTable() {
+        this.slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        this.sparse = new ConcurrentHashMap<>();
+    }
+
+
+    public T get(int id) {
+        AtomicReferenceArray<T> current = slots;
+        if (id >= 0 && id < current.length()) {
+            return current.get(id);
+        }
+        return isDense(id) ? null : sparse.get(id);
+    }
+
+
+    /**
+     * Returns the entry for the ID, creating it with the factory if absent
+     * Pass a non-capturing factory (e.g. a constructor reference) to keep hits allocation-free
+     */
+    public T computeIfAbsent(int id, IntFunction<? extends T> factory) {
+        T value = get(id);
+        if (value != null) {
+            return value;
+        }
+
+        synchronized (this) {
+            value = get(id);
+            if (value == null) {
+                value = factory.apply(id);
+                put(id, value);
+            }
+            return value;
+        }
+    }
+
+
+    public synchronized void clear() {
+        slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        sparse.clear();
+    }
+
+
+    private void put(int id, T value) {
+        if (!isDense(id)) {
+            sparse.put(id, value);
+            return;
+        }
+
+        AtomicReferenceArray<T> current = slots;
+        if (id >= current.length()) {
+            int capacity = current.length();
+            while (capacity <= id) {
+                capacity *= 2;
+            }
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(Math.min(capacity, MAX_DENSE_ID));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            slots = grown;
+            current = grown;
+        }
+        current.set(id, value);
+    }
+
+
+    private static boolean isDense(int id) {
+        return id >= 0 && id < MAX_DENSE_ID;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-negative int values
+ * Keys and values live in primitive arrays, so lookups and updates neither box
+ * nor allocate; only growing the table does. Not thread-safe
+ *
+ * @author Hend Okasha
+ */
+class IntIntMap {
+    static final int MISSING = -1;
+
+    private int[] keys;
+    // MISSING marks an empty slot
+    private int[] values;
+    private int mask;
+    private int size;
+
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+
+    int get(int key) {
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                return MISSING;
+            }
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+    }
+
+
+    void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            if (values[i] == MISSING) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Removes the key and returns its value, or MISSING
+     * Later entries of the probe run are shifted back, so no tombstones build up
+     */
+    int remove(int key) {
+        int hole = indexOf(key);
+        while (values[hole] != MISSING && keys[hole] != key) {
+            hole = (hole + 1) & mask;
+        }
+        int removed = values[hole];
+        if (removed == MISSING) {
+            return MISSING;
+        }
+
+        for (int i = (hole + 1) & mask; values[i] != MISSING; i = (i + 1) & mask) {
+            int home = indexOf(keys[i]);
+            boolean homeAfterHole = (hole < i) ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!homeAfterHole) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = MISSING;
+        size--;
+        return removed;
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+
+    private int indexOf(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Merton jump diffusion: geometric Brownian motion plus Poisson-timed jumps
+ * with normally distributed log size; the drift is compensated so jumps do
+ * not change the expected return
+ *
+ * @author Hend Okasha
+ */
+public class JumpDiffusionPriceModel implements PriceModel {
+    private final SymbolParameter drift;
+    private final SymbolParameter volatility;
+    private final double jumpIntensity;
+    private final double jumpMean;
+    private final double jumpVolatility;
+    private final double compensator;
+
+    /**
+     * @param jumpIntensity  expected jumps per second
+     * @param jumpMean       mean of the log jump size
+     * @param jumpVolatility standard deviation of the log jump size
+     */
+    public JumpDiffusionPriceModel(double drift, double volatility,
+                                   double jumpIntensity, double jumpMean, double jumpVolatility) {
+        if (jumpIntensity < 0) {
+            throw new IllegalArgumentException("Jump intensity cannot be negative");
+        }
+        this.drift = new SymbolParameter(drift);
+        this.volatility = new SymbolParameter(volatility);
+        this.jumpIntensity = jumpIntensity;
+        this.jumpMean = jumpMean;
+        this.jumpVolatility = jumpVolatility;
+        this.compensator = jumpIntensity * (Math.exp(jumpMean + 0.5 * jumpVolatility * jumpVolatility) - 1);
+    }
+
+
+    public void setParameters(int symbolIndex, double drift, double volatility) {
+        this.drift.set(symbolIndex, drift);
+        this.volatility.set(symbolIndex, volatility);
+    }
+
+
+    @Override
+    public void advance(double[] prices, int[] symbolIndexes, int count, double dtSeconds,
+                        double[] shocks, RandomGenerator random) {
+        double sqrtDt = Math.sqrt(dtSeconds);
+        double jumpProbability = jumpIntensity * dtSeconds;
+
+        for (int i = 0; i < count; i++) {
+            int symbol = symbolIndexes[i];
+            double sigma = volatility.get(symbol);
+            double mu = drift.get(symbol) - compensator;
+            double logReturn = (mu - 0.5 * sigma * sigma) * dtSeconds + sigma * sqrtDt * shocks[i];
+
+            // At most one jump per step; steps are short next to the time between jumps
+            if (random.nextDouble() < jumpProbability) {
+                logReturn += jumpMean + jumpVolatility * random.nextGaussian();
+            }
+            prices[i] *= Math.exp(logReturn);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the manner of HdrHistogram
+ * Values below 128 ns get a bucket each; above that every power-of-two range is
+ * split into 64 equal buckets, so any recorded value is known to within 1/64 (about
+ * 1.6%) up to the 2^40 ns (18 minute) ceiling. Recording is one atomic increment
+ * plus a sum and a max update: no locks and no allocation
+ *
+ * @author Hend Okasha
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+    static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalNanos;
+    private final AtomicLong maxNanos;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new AtomicLong();
+    }
+
+
+    /**
+     * Records one latency; negative values count as zero and values past the ceiling as the ceiling
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        counts.incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+
+    /**
+     * Copies the counts; records made while the copy runs may be partly included
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, totalNanos.sum(), maxNanos.get());
+    }
+
+
+    static int bucketIndex(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+
+    /**
+     * Highest value that falls into the bucket
+     */
+    static long bucketUpperBound(int index) {
+        int shift = Math.max(0, (index >>> (SUB_BUCKET_BITS - 1)) - 1);
+        long subBucket = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
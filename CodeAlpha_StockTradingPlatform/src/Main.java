@@ -7,9 +7,17 @@
  * @author Hend Okasha
  */
 public class Main {
+    private static final int DEFAULT_TICKS_PER_SECOND = 1000;
+    private static final int DEFAULT_METRICS_INTERVAL_SECONDS = 60;
+
+
     public static void main(String[] args) {
         // Initialize system components
-        TradingPlatform platform = new TradingPlatform();
+        // Journal durability: -Dpersistence.fsync=ALWAYS|INTERVAL|NEVER [-Dpersistence.fsyncMillis=N]
+        FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(
+                System.getProperty("persistence.fsync", FsyncPolicy.INTERVAL.name()).toUpperCase());
+        TradingPlatform platform = new TradingPlatform(".", TradingPlatform.DEFAULT_CHECKPOINT_INTERVAL,
+                fsyncPolicy, Long.getLong("persistence.fsyncMillis", TradingPlatform.DEFAULT_FSYNC_INTERVAL_MILLIS));
         MarketDataService marketService = new MarketDataService();
 
 
@@ -17,6 +25,17 @@ public class Main {
             initializeSampleStocks(platform);
         }
 
+        // Simulated prices keep moving in the background; override with -Dmarket.ticksPerSecond=N
+        marketService.start(platform.getStocks(),
+                Integer.getInteger("market.ticksPerSecond", DEFAULT_TICKS_PER_SECOND));
+
+        // Optional metrics dump: -Dmetrics.file=metrics.jsonl [-Dmetrics.intervalSeconds=N]
+        String metricsFile = System.getProperty("metrics.file");
+        if (metricsFile != null) {
+            MetricsReporter reporter = new MetricsReporter(platform.getMetrics(), metricsFile);
+            reporter.start(Integer.getInteger("metrics.intervalSeconds", DEFAULT_METRICS_INTERVAL_SECONDS));
+            Runtime.getRuntime().addShutdownHook(new Thread(reporter::stop));
+        }
 
         TradingMenu menu = new TradingMenu(platform, marketService);
         menu.start();
@@ -38,7 +57,7 @@ public class Main {
         };
 
         for (Stock stock : sampleStocks) {
-            platform.getStocks().add(stock);
+            platform.addStock(stock);
         }
 
         System.out.println("Sample stocks initialized successfully.");
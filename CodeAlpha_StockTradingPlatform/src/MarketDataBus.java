@@ -0,0 +1,129 @@
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publish/subscribe fan-out of quote updates
+ * Subscribers follow every symbol or a chosen set; publishing looks up the
+ * symbol's subscribers and parks the quote with each of them, so the tick
+ * thread never waits on a listener. Listeners run on a small pool of
+ * delivery threads and receive coalesced batches (see QuoteSubscription)
+ * Sinks are synchronous taps that see every quote on the publishing thread
+ *
+ * @author Hend Okasha
+ */
+public class MarketDataBus {
+    private final ExecutorService deliveryExecutor;
+    private final List<QuoteSubscription> allSymbolSubscriptions;
+    private final Map<String, List<QuoteSubscription>> subscriptionsBySymbol;
+    private final List<QuoteSink> sinks;
+
+    public MarketDataBus(int deliveryThreads) {
+        if (deliveryThreads <= 0) {
+            throw new IllegalArgumentException("Delivery thread count must be positive");
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.deliveryExecutor = Executors.newFixedThreadPool(deliveryThreads, task -> {
+            Thread thread = new Thread(task, "market-data-delivery-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.allSymbolSubscriptions = new CopyOnWriteArrayList<>();
+        this.subscriptionsBySymbol = new ConcurrentHashMap<>();
+        this.sinks = new CopyOnWriteArrayList<>();
+    }
+
+
+    /**
+     * Subscribes to the given symbols, or to every symbol when none are given
+     */
+    public QuoteSubscription subscribe(QuoteListener listener, String... symbols) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is required");
+        }
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            keys.add(normalizeSymbol(symbol));
+        }
+
+        QuoteSubscription subscription =
+                new QuoteSubscription(listener, Collections.unmodifiableSet(keys), deliveryExecutor);
+
+        if (keys.isEmpty()) {
+            subscription.setOnCancel(() -> allSymbolSubscriptions.remove(subscription));
+            allSymbolSubscriptions.add(subscription);
+        } else {
+            subscription.setOnCancel(() -> {
+                for (String key : keys) {
+                    subscriptionsBySymbol.computeIfPresent(key, (k, list) -> {
+                        list.remove(subscription);
+                        return list.isEmpty() ? null : list;
+                    });
+                }
+            });
+            for (String key : keys) {
+                subscriptionsBySymbol.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(subscription);
+            }
+        }
+        return subscription;
+    }
+
+
+    /**
+     * Adds a tap that is called with every quote on the publishing thread
+     */
+    public void addSink(QuoteSink sink) {
+        sinks.add(sink);
+    }
+
+
+    public boolean removeSink(QuoteSink sink) {
+        return sinks.remove(sink);
+    }
+
+
+    /**
+     * Fans a quote out to its sinks and subscribers without blocking
+     */
+    public void publish(Quote quote) {
+        for (QuoteSink sink : sinks) {
+            try {
+                sink.onQuote(quote);
+            } catch (RuntimeException e) {
+                // A failing tap must not stop the tick thread
+                System.out.println("Error in market data sink: " + e.getMessage());
+            }
+        }
+
+        for (QuoteSubscription subscription : allSymbolSubscriptions) {
+            subscription.offer(quote);
+        }
+
+        List<QuoteSubscription> subscriptions = subscriptionsBySymbol.get(normalizeSymbol(quote.getSymbol()));
+        if (subscriptions != null) {
+            for (QuoteSubscription subscription : subscriptions) {
+                subscription.offer(quote);
+            }
+        }
+    }
+
+
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+
+    private static String normalizeSymbol(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+}
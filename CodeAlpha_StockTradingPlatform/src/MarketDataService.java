@@ -1,35 +1,218 @@
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Simulates market data and price fluctuations
  * In a real-world scenario, this would integrate with financial data APIs
+ * Once started, a pool of background workers ticks the stocks continuously at
+ * a configurable rate; each worker owns a stripe of the stock list so workers
+ * never tick the same symbol, and trading threads are never blocked
+ * Price moves come from a pluggable PriceModel (geometric Brownian motion by
+ * default) applied to batches of prices in primitive arrays
+ * Every new quote is published on the market data bus for subscribers and
+ * folded into OHLCV bars for price history
  *
  * @author Hend Okasha
  */
 public class MarketDataService {
-    private final Random random;
+    private static final double MIN_PRICE = 1.0;
+    private static final int BATCH_SIZE = 1024;
+    private static final double DEFAULT_VOLATILITY = 0.03;
+    private static final long TICK_PERIOD_MILLIS = 10;
+
+    private final int workerCount;
+    private final LongAdder tickCount;
+    private final MarketDataBus bus;
+    private final BarAggregator barAggregator;
+    private final MarketFactor marketFactor;
+    private volatile PriceModel priceModel;
+    private volatile double correlation;
+    private ScheduledExecutorService scheduler;
+    private volatile int ticksPerSecond;
 
     public MarketDataService() {
-        this.random = new Random();
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
     }
 
+    public MarketDataService(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.workerCount = workerCount;
+        this.tickCount = new LongAdder();
+        this.bus = new MarketDataBus(1);
+        this.barAggregator = new BarAggregator();
+        bus.addSink(barAggregator);
+        this.marketFactor = new MarketFactor();
+        this.priceModel = new GbmPriceModel(0.0, DEFAULT_VOLATILITY);
+    }
 
-    public void updateMarketPrices(List<Stock> stocks) {
-        for (Stock stock : stocks) {
-            double currentPrice = stock.getCurrentPrice();
 
-            // Generate random price change between -5% and +5%
-            double changePercent = (random.nextDouble() * 10) - 5;
-            double newPrice = currentPrice * (1 + changePercent / 100);
+    /**
+     * Starts ticking the given stocks in the background
+     * The list is re-read on every run, so stocks added later are picked up
+     */
+    public synchronized void start(List<Stock> stocks, int ticksPerSecond) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Market data engine is already running");
+        }
+        setTicksPerSecond(ticksPerSecond);
 
-            // Ensure price doesn't go below $1
-            if (newPrice < 1.0) {
-                newPrice = 1.0;
-            }
+        AtomicInteger threadNumber = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "market-data-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int worker = 0; worker < workerCount; worker++) {
+            scheduler.scheduleAtFixedRate(new TickWorker(stocks, worker),
+                    0, TICK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+
+    /**
+     * Changes the tick rate; running workers adjust on their next run
+     */
+    public void setTicksPerSecond(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive");
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public long getTickCount() {
+        return tickCount.sum();
+    }
+
+
+    /**
+     * Replaces the process that moves prices; takes effect on the next tick
+     */
+    public void setPriceModel(PriceModel priceModel) {
+        if (priceModel == null) {
+            throw new IllegalArgumentException("Price model is required");
+        }
+        this.priceModel = priceModel;
+    }
+
+    public PriceModel getPriceModel() {
+        return priceModel;
+    }
+
+
+    /**
+     * Sets how strongly symbols move together, from 0 (independent) to 1 (in lockstep)
+     * Each move blends a shared market factor with the symbol's own noise
+     */
+    public void setCorrelation(double correlation) {
+        if (correlation < 0 || correlation > 1) {
+            throw new IllegalArgumentException("Correlation must be between 0 and 1");
+        }
+        this.correlation = correlation;
+    }
+
+    public double getCorrelation() {
+        return correlation;
+    }
+
+
+    /**
+     * Pushes price updates for the given symbols (all symbols if none) to the listener
+     */
+    public QuoteSubscription subscribe(QuoteListener listener, String... symbols) {
+        return bus.subscribe(listener, symbols);
+    }
+
+
+    /**
+     * Adds a synchronous tap that sees every new quote on the tick thread
+     */
+    public void addQuoteSink(QuoteSink sink) {
+        bus.addSink(sink);
+    }
+
+
+    public boolean removeQuoteSink(QuoteSink sink) {
+        return bus.removeSink(sink);
+    }
+
+
+    /**
+     * Fans a quote out to sinks and subscribers as if it had been ticked here,
+     * e.g. for quotes published by a tick replay
+     */
+    public void publish(Quote quote) {
+        bus.publish(quote);
+    }
+
+
+    /**
+     * Creates a conflating cache that collects the latest quote per symbol for a
+     * consumer to drain at its own pace; remove it with removeQuoteSink when done
+     */
+    public ConflatingQuoteCache openQuoteCache() {
+        ConflatingQuoteCache cache = new ConflatingQuoteCache();
+        bus.addSink(cache);
+        return cache;
+    }
+
+
+    /**
+     * Up to the last n price bars of the symbol, oldest first
+     */
+    public List<Bar> getBars(String symbol, BarInterval interval, int n) {
+        return barAggregator.getBars(symbol, interval, n);
+    }
+
+
+    /**
+     * Moves every stock once by one second of the price model, on the calling thread
+     */
+    public void updateMarketPrices(List<Stock> stocks) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double rho = correlation;
+        double marketShock = random.nextGaussian();
+        TickBatch batch = new TickBatch();
 
-            stock.setCurrentPrice(newPrice);
+        for (int index = 0; index < stocks.size(); index++) {
+            batch.add(stocks.get(index), index);
+            batch.shocks[batch.count - 1] = Math.sqrt(rho) * marketShock + Math.sqrt(1 - rho) * random.nextGaussian();
+            if (batch.isFull()) {
+                applyBatch(batch, 1.0);
+            }
         }
+        applyBatch(batch, 1.0);
     }
 
 
@@ -41,13 +224,13 @@ public class MarketDataService {
         System.out.println("─────────────────────────────────────────");
 
         for (Stock stock : stocks) {
-            double changePercent = stock.getPriceChangePercent();
-            String changeStr = String.format("%+.2f%%", changePercent);
+            Quote quote = stock.getQuote();
+            String changeStr = String.format("%+.2f%%", quote.getChangePercent());
 
             System.out.printf("%-8s %-20s $%9.2f %12s%n",
                     stock.getSymbol(),
                     truncateString(stock.getName(), 20),
-                    stock.getCurrentPrice(),
+                    quote.getPrice(),
                     changeStr);
         }
 
@@ -55,10 +238,186 @@ public class MarketDataService {
     }
 
 
+    /**
+     * Runs the price model over the batch and publishes the new quotes
+     * A stock updated concurrently since its quote was read keeps that update,
+     * and this tick is dropped rather than priced off a stale quote
+     */
+    private void applyBatch(TickBatch batch, double dtSeconds) {
+        if (batch.count == 0) {
+            return;
+        }
+
+        priceModel.advance(batch.prices, batch.indexes, batch.count, dtSeconds,
+                batch.shocks, ThreadLocalRandom.current());
+
+        for (int i = 0; i < batch.count; i++) {
+            double newPrice = batch.prices[i];
+
+            // Ensure price doesn't go below $1 (also catches a model returning NaN)
+            if (!(newPrice >= MIN_PRICE)) {
+                newPrice = MIN_PRICE;
+            }
+
+            Quote quote = batch.stocks[i].compareAndSetPrice(batch.quotes[i], newPrice);
+            if (quote != null) {
+                bus.publish(quote);
+                tickCount.increment();
+            }
+            batch.stocks[i] = null;
+            batch.quotes[i] = null;
+        }
+        batch.count = 0;
+    }
+
+
     private String truncateString(String str, int maxLength) {
         if (str.length() <= maxLength) {
             return str;
         }
         return str.substring(0, maxLength - 3) + "...";
     }
+
+
+    /**
+     * Scratch arrays for one batch of ticks, reused across runs
+     */
+    private static class TickBatch {
+        final int[] indexes = new int[BATCH_SIZE];
+        final Stock[] stocks = new Stock[BATCH_SIZE];
+        final Quote[] quotes = new Quote[BATCH_SIZE];
+        final double[] prices = new double[BATCH_SIZE];
+        final double[] shocks = new double[BATCH_SIZE];
+        int count;
+
+        void add(Stock stock, int index) {
+            Quote quote = stock.getQuote();
+            indexes[count] = index;
+            stocks[count] = stock;
+            quotes[count] = quote;
+            prices[count] = quote.getPrice();
+            count++;
+        }
+
+        boolean isFull() {
+            return count == BATCH_SIZE;
+        }
+    }
+
+
+    /**
+     * Common market factor: a Brownian path shared by all workers
+     * A symbol's move takes the factor's change since that symbol's previous
+     * tick, which is what correlates symbols ticked at different times
+     */
+    private static class MarketFactor {
+        private long lastNanos = System.nanoTime();
+        private double value;
+
+        synchronized double valueAt(long nowNanos) {
+            long elapsed = nowNanos - lastNanos;
+            if (elapsed > 0) {
+                value += Math.sqrt(elapsed / 1e9) * ThreadLocalRandom.current().nextGaussian();
+                lastNanos = nowNanos;
+            }
+            return value;
+        }
+    }
+
+
+    /**
+     * Ticks the stocks at indexes worker, worker + workerCount, ... in round-robin order
+     * Ticks owed are derived from elapsed time, so a late run catches up instead of drifting
+     */
+    private class TickWorker implements Runnable {
+        private final List<Stock> stocks;
+        private final int worker;
+        private final TickBatch batch;
+        private long startNanos;
+        private int rate;
+        private long ticksDone;
+        private int cursor;
+
+        // Market factor value and time at each stripe position's previous tick
+        private double[] lastFactor;
+        private long[] lastTickNanos;
+
+        TickWorker(List<Stock> stocks, int worker) {
+            this.stocks = stocks;
+            this.worker = worker;
+            this.batch = new TickBatch();
+            this.lastFactor = new double[0];
+            this.lastTickNanos = new long[0];
+        }
+
+        @Override
+        public void run() {
+            int stockCount = stocks.size();
+            int stripeSize = (stockCount - worker + workerCount - 1) / workerCount;
+            if (stripeSize <= 0) {
+                return;
+            }
+            if (stripeSize > lastTickNanos.length) {
+                lastFactor = Arrays.copyOf(lastFactor, stripeSize);
+                lastTickNanos = Arrays.copyOf(lastTickNanos, stripeSize);
+            }
+
+            // Restart the schedule whenever the rate changes
+            if (rate != ticksPerSecond) {
+                rate = ticksPerSecond;
+                startNanos = System.nanoTime();
+                ticksDone = 0;
+            }
+
+            long now = System.nanoTime();
+            double workerRate = (double) rate / workerCount;
+            long ticksDue = (long) ((now - startNanos) / 1e9 * workerRate);
+
+            // Don't let a long stall turn into a burst of more than one second's worth
+            ticksDone = Math.max(ticksDone, ticksDue - (long) Math.ceil(workerRate));
+
+            // Each symbol is ticked once per stockCount / rate seconds
+            double dtSeconds = (double) stockCount / rate;
+            double rho = correlation;
+            double factor = marketFactor.valueAt(now);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            while (ticksDone < ticksDue) {
+                if (cursor >= stripeSize) {
+                    // Finish the pass first, so a batch never holds the same stock twice
+                    cursor = 0;
+                    applyBatch(batch, dtSeconds);
+                }
+                int position = cursor++;
+                int index = worker + position * workerCount;
+
+                Stock stock;
+                try {
+                    stock = stocks.get(index);
+                } catch (IndexOutOfBoundsException e) {
+                    // The list shrank since this run started
+                    cursor = 0;
+                    break;
+                }
+
+                double commonShock;
+                long sinceLastTick = now - lastTickNanos[position];
+                if (lastTickNanos[position] == 0 || sinceLastTick <= 0) {
+                    commonShock = random.nextGaussian();
+                } else {
+                    commonShock = (factor - lastFactor[position]) / Math.sqrt(sinceLastTick / 1e9);
+                }
+                lastFactor[position] = factor;
+                lastTickNanos[position] = now;
+
+                batch.add(stock, index);
+                batch.shocks[batch.count - 1] = Math.sqrt(rho) * commonShock + Math.sqrt(1 - rho) * random.nextGaussian();
+                if (batch.isFull()) {
+                    applyBatch(batch, dtSeconds);
+                }
+                ticksDone++;
+            }
+            applyBatch(batch, dtSeconds);
+        }
+    }
 }
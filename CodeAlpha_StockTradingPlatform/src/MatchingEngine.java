@@ -0,0 +1,45 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes orders to per-symbol order books
+ * Each book is matched under its own monitor, so different symbols match in parallel
+ *
+ * @author Hend Okasha
+ */
+public class MatchingEngine {
+    private final Map<String, OrderBook> books;
+
+
+    public MatchingEngine() {
+        books = new ConcurrentHashMap<>();
+    }
+
+
+    public void submit(Order order, FillHandler fillHandler) {
+        OrderBook book = getOrderBook(order.getSymbol());
+        synchronized (book) {
+            book.submit(order, fillHandler);
+        }
+    }
+
+
+    /**
+     * Cancels a resting order, provided it belongs to the given user
+     */
+    public boolean cancel(String symbol, int orderId, int userId) {
+        OrderBook book = getOrderBook(symbol);
+        synchronized (book) {
+            Order order = book.getRestingOrder(orderId);
+            if (order == null || order.getUserId() != userId) {
+                return false;
+            }
+            return book.cancel(orderId);
+        }
+    }
+
+
+    public OrderBook getOrderBook(String symbol) {
+        return books.computeIfAbsent(symbol, OrderBook::new);
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Ornstein-Uhlenbeck process on the log price, so prices revert towards a mean
+ * and stay positive; uses the exact discretization, so any step size is stable
+ * A symbol without an explicit mean reverts to the first price the model sees
+ *
+ * @author Hend Okasha
+ */
+public class MeanReversionPriceModel implements PriceModel {
+    private final SymbolParameter speed;
+    private final SymbolParameter volatility;
+    private final SymbolParameter mean;
+
+    /**
+     * @param speed      reversion rate per second
+     * @param volatility volatility of the log price per square-root second
+     */
+    public MeanReversionPriceModel(double speed, double volatility) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Reversion speed must be positive");
+        }
+        this.speed = new SymbolParameter(speed);
+        this.volatility = new SymbolParameter(volatility);
+        this.mean = new SymbolParameter(Double.NaN);
+    }
+
+
+    public void setParameters(int symbolIndex, double speed, double volatility, double meanPrice) {
+        if (speed <= 0 || meanPrice <= 0) {
+            throw new IllegalArgumentException("Reversion speed and mean price must be positive");
+        }
+        this.speed.set(symbolIndex, speed);
+        this.volatility.set(symbolIndex, volatility);
+        this.mean.set(symbolIndex, Math.log(meanPrice));
+    }
+
+
+    @Override
+    public void advance(double[] prices, int[] symbolIndexes, int count, double dtSeconds,
+                        double[] shocks, RandomGenerator random) {
+        for (int i = 0; i < count; i++) {
+            int symbol = symbolIndexes[i];
+            double logPrice = Math.log(prices[i]);
+
+            double logMean = mean.get(symbol);
+            if (Double.isNaN(logMean)) {
+                logMean = logPrice;
+                mean.set(symbol, logMean);
+            }
+
+            double theta = speed.get(symbol);
+            double sigma = volatility.get(symbol);
+            double decay = Math.exp(-theta * dtSeconds);
+            double stdDev = sigma * Math.sqrt((1 - decay * decay) / (2 * theta));
+
+            prices[i] = Math.exp(logMean + (logPrice - logMean) * decay + stdDev * shocks[i]);
+        }
+    }
+}
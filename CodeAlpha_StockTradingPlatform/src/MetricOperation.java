@@ -0,0 +1,12 @@
+/**
+ * Enumeration for the platform operations whose latency is measured
+ *
+ * @author Hend Okasha
+ */
+public enum MetricOperation {
+    BUY,
+    SELL,
+    VALUATION,
+    LOAD,
+    SAVE
+}
@@ -0,0 +1,71 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically appends a metrics snapshot to a local file, one JSON object per line
+ * Runs on a single daemon thread; stop() writes a final snapshot
+ *
+ * @author Hend Okasha
+ */
+public class MetricsReporter {
+    private final TradingMetrics metrics;
+    private final String dumpFile;
+    // Separate from the instance lock, which stop() holds while waiting for a running dump
+    private final Object fileLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    public MetricsReporter(TradingMetrics metrics, String dumpFile) {
+        this.metrics = metrics;
+        this.dumpFile = dumpFile;
+    }
+
+
+    public synchronized void start(long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Metrics reporter is already running");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::dump, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        dump();
+    }
+
+
+    /**
+     * Appends the current snapshot to the dump file
+     */
+    public void dump() {
+        synchronized (fileLock) {
+            try (PrintWriter pw = new PrintWriter(new FileWriter(dumpFile, true))) {
+                pw.println(metrics.snapshot().toJson());
+            } catch (IOException e) {
+                System.out.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Point-in-time copy of the platform metrics
+ * Counts and latencies are cumulative since the platform started
+ *
+ * @author Hend Okasha
+ */
+public class MetricsSnapshot {
+    private static final MetricOperation[] OPERATIONS = MetricOperation.values();
+    private static final TradeCode[] CODES = TradeCode.values();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final long capturedMillis;
+    private final long startedMillis;
+    private final HistogramSnapshot[] latencies;
+    private final long[] failures;
+    private final long[] tradeOutcomes;
+
+    MetricsSnapshot(long capturedMillis, long startedMillis, HistogramSnapshot[] latencies,
+                    long[] failures, long[] tradeOutcomes) {
+        this.capturedMillis = capturedMillis;
+        this.startedMillis = startedMillis;
+        this.latencies = latencies;
+        this.failures = failures;
+        this.tradeOutcomes = tradeOutcomes;
+    }
+
+
+    public LocalDateTime getCapturedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(capturedMillis), ZoneId.systemDefault());
+    }
+
+    public long getUptimeMillis() {
+        return capturedMillis - startedMillis;
+    }
+
+    public HistogramSnapshot getLatency(MetricOperation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getCount(MetricOperation operation) {
+        return latencies[operation.ordinal()].getCount();
+    }
+
+    public long getFailures(MetricOperation operation) {
+        return failures[operation.ordinal()];
+    }
+
+    public long getTradeCount(TradeCode code) {
+        return tradeOutcomes[code.ordinal()];
+    }
+
+
+    /**
+     * Console table of counts and latencies in microseconds, followed by the trade outcomes
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-10s %9s %7s %10s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Failed", "Mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "Max us"));
+
+        for (MetricOperation operation : OPERATIONS) {
+            HistogramSnapshot latency = getLatency(operation);
+            text.append(String.format("%-10s %9d %7d %10.1f", operation, latency.getCount(),
+                    getFailures(operation), latency.getMeanNanos() / 1_000));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(" %10.1f", latency.getValueAtPercentile(percentile) / 1_000.0));
+            }
+            text.append(String.format(" %10.1f%n", latency.getMaxNanos() / 1_000.0));
+        }
+
+        text.append("Trade outcomes:");
+        boolean any = false;
+        for (TradeCode code : CODES) {
+            if (getTradeCount(code) > 0) {
+                text.append(any ? ", " : " ").append(code).append('=').append(getTradeCount(code));
+                any = true;
+            }
+        }
+        return text.append(any ? "" : " none").toString();
+    }
+
+
+    /**
+     * Single-line JSON object with latencies in nanoseconds
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"capturedAt\":\"").append(getCapturedAt())
+                .append("\",\"uptimeMillis\":").append(getUptimeMillis())
+                .append(",\"operations\":{");
+
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            HistogramSnapshot latency = latencies[i];
+            json.append(i > 0 ? "," : "").append('"').append(OPERATIONS[i]).append("\":{")
+                    .append("\"count\":").append(latency.getCount())
+                    .append(",\"failures\":").append(failures[i])
+                    .append(",\"meanNanos\":").append(Math.round(latency.getMeanNanos()))
+                    .append(",\"p50Nanos\":").append(latency.getValueAtPercentile(50))
+                    .append(",\"p90Nanos\":").append(latency.getValueAtPercentile(90))
+                    .append(",\"p99Nanos\":").append(latency.getValueAtPercentile(99))
+                    .append(",\"p999Nanos\":").append(latency.getValueAtPercentile(99.9))
+                    .append(",\"maxNanos\":").append(latency.getMaxNanos())
+                    .append('}');
+        }
+
+        json.append("},\"trades\":{");
+        for (int i = 0; i < CODES.length; i++) {
+            json.append(i > 0 ? "," : "").append('"').append(CODES[i]).append("\":").append(tradeOutcomes[i]);
+        }
+        return json.append("}}").toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Fixed-point money on primitive longs
+ * Prices, balances and amounts are held as whole micro-units (millionths of a
+ * currency unit), so sums and price x quantity products are exact and none of
+ * the arithmetic allocates. Doubles appear only at the edges: for display and
+ * for the price models, whose output is rounded to the nearest micro-unit
+ *
+ * @author Hend Okasha
+ */
+public final class Money {
+    public static final int SCALE_DIGITS = 6;
+    public static final long SCALE = 1_000_000L;
+
+    private static final int MIN_FRACTION_DIGITS = 2;
+    private static final double MAX_UNITS = Long.MAX_VALUE / (double) SCALE;
+
+
+    private Money() {
+    }
+
+
+    /**
+     * Nearest micro-unit amount to a double (half away from zero)
+     *
+     * @throws ArithmeticException if the amount is not finite or does not fit in a long
+     */
+    public static long fromDouble(double amount) {
+        if (!(Math.abs(amount) < MAX_UNITS)) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        double scaled = amount * SCALE;
+        return (long) (scaled < 0 ? scaled - 0.5 : scaled + 0.5);
+    }
+
+
+    public static double toDouble(long micros) {
+        return micros / (double) SCALE;
+    }
+
+
+    public static long ofUnits(long units) {
+        return Math.multiplyExact(units, SCALE);
+    }
+
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+
+    /**
+     * Exact price x quantity
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public static long multiply(long priceMicros, long quantity) {
+        return Math.multiplyExact(priceMicros, quantity);
+    }
+
+
+    /**
+     * Amount divided by a count (e.g. a cost basis by a share quantity),
+     * rounded half away from zero to the nearest micro-unit
+     */
+    public static long divide(long micros, long divisor) {
+        long quotient = micros / divisor;
+        long remainder = Math.abs(micros % divisor);
+        if (remainder >= Math.abs(divisor) - remainder) {
+            quotient += ((micros < 0) == (divisor < 0)) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+
+    /**
+     * Parses a plain decimal such as "175.5" or "-0.000001" exactly; digits past
+     * the sixth decimal place are rounded half up. Exponent forms written by
+     * older versions (e.g. "1.0E7") are read through double
+     *
+     * @throws NumberFormatException if the text is not a decimal number
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        while (length > i && Character.isWhitespace(text.charAt(length - 1))) {
+            length--;
+        }
+
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long units = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                int digit = c - '0';
+                if (!seenPoint) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), digit);
+                } else if (fractionDigits < SCALE_DIGITS) {
+                    fraction = fraction * 10 + digit;
+                    fractionDigits++;
+                } else if (fractionDigits++ == SCALE_DIGITS) {
+                    roundUp = digit >= 5;
+                }
+            } else if (c == 'e' || c == 'E') {
+                return fromDouble(Double.parseDouble(text.toString().trim()));
+            } else {
+                throw new NumberFormatException("Not a money amount: \"" + text + "\"");
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Not a money amount: \"" + text + "\"");
+        }
+
+        for (int d = Math.min(fractionDigits, SCALE_DIGITS); d < SCALE_DIGITS; d++) {
+            fraction *= 10;
+        }
+        long micros = Math.addExact(ofUnits(units), fraction + (roundUp ? 1 : 0));
+        return negative ? -micros : micros;
+    }
+
+
+    /**
+     * Exact decimal text of the amount, with at least two and at most six decimals
+     */
+    public static String format(long micros) {
+        return appendTo(new StringBuilder(24), micros).toString();
+    }
+
+
+    /**
+     * Appends the exact decimal text of the amount without creating intermediate strings
+     */
+    public static StringBuilder appendTo(StringBuilder out, long micros) {
+        if (micros < 0) {
+            out.append('-');
+        }
+        out.append(Math.abs(micros / SCALE)).append('.');
+
+        long fraction = Math.abs(micros % SCALE);
+        int digits = SCALE_DIGITS;
+        while (digits > MIN_FRACTION_DIGITS && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (long bound = pow10(digits - 1); bound > fraction && bound > 1; bound /= 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
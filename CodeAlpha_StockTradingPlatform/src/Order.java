@@ -0,0 +1,110 @@
+/**
+ * Represents a limit or market order in a symbol's order book
+ * Prices are held as integer ticks; the queue links are intrusive so
+ * resting orders are added and removed without extra node objects
+ *
+ * @author Hend Okasha
+ */
+public class Order {
+    private final int orderId;
+    private final int userId;
+    private final String symbol;
+    private final TransactionType side;
+    private final OrderType type;
+    private final long priceTicks;
+    private final int quantity;
+    private int filledQuantity;
+    private OrderStatus status;
+
+    // Queue links, maintained by PriceLevel while the order rests in the book
+    Order prev;
+    Order next;
+    PriceLevel level;
+
+
+    public Order(int orderId, int userId, String symbol, TransactionType side,
+                 OrderType type, long priceTicks, int quantity) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.symbol = symbol;
+        this.side = side;
+        this.type = type;
+        this.priceTicks = priceTicks;
+        this.quantity = quantity;
+        this.filledQuantity = 0;
+        this.status = OrderStatus.OPEN;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public TransactionType getSide() {
+        return side;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public double getLimitPrice() {
+        return OrderBook.ticksToPrice(priceTicks);
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    public int getRemainingQuantity() {
+        return quantity - filledQuantity;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public boolean isActive() {
+        return status == OrderStatus.OPEN || status == OrderStatus.PARTIALLY_FILLED;
+    }
+
+
+    void fill(int fillQuantity) {
+        filledQuantity += fillQuantity;
+        status = (filledQuantity == quantity) ? OrderStatus.FILLED : OrderStatus.PARTIALLY_FILLED;
+    }
+
+    void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "Order{" +
+                "orderId=" + orderId +
+                ", userId=" + userId +
+                ", symbol='" + symbol + '\'' +
+                ", side=" + side +
+                ", type=" + type +
+                ", limitPrice=" + (type == OrderType.LIMIT ? getLimitPrice() : "MARKET") +
+                ", quantity=" + quantity +
+                ", filled=" + filledQuantity +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limit order book for a single symbol
+ * Matches incoming orders against resting ones in price-time priority;
+ * callers must hold the book's monitor while submitting or cancelling
+ *
+ * @author Hend Okasha
+ */
+public class OrderBook {
+    public static final int TICKS_PER_UNIT = 100;
+
+    private final String symbol;
+    private final OrderBookSide bids;
+    private final OrderBookSide asks;
+    private final Map<Integer, Order> restingOrders;
+
+
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+        this.bids = new OrderBookSide(true);
+        this.asks = new OrderBookSide(false);
+        this.restingOrders = new HashMap<>();
+    }
+
+
+    public static long priceToTicks(double price) {
+        return Math.round(price * TICKS_PER_UNIT);
+    }
+
+    public static double ticksToPrice(long priceTicks) {
+        return (double) priceTicks / TICKS_PER_UNIT;
+    }
+
+    public static long ticksToMicros(long priceTicks) {
+        return Math.multiplyExact(priceTicks, Money.SCALE / TICKS_PER_UNIT);
+    }
+
+
+    /**
+     * Matches the order against the opposite side, then rests any limit
+     * remainder; market orders never rest
+     */
+    public void submit(Order incoming, FillHandler fillHandler) {
+        OrderBookSide opposite = (incoming.getSide() == TransactionType.BUY) ? asks : bids;
+        boolean incomingRejected = false;
+
+        while (incoming.getRemainingQuantity() > 0) {
+            PriceLevel best = opposite.best();
+            if (best == null || !crosses(incoming, best.getPriceTicks())) {
+                break;
+            }
+
+            Order resting = best.getHead();
+            int fillQuantity = Math.min(incoming.getRemainingQuantity(), resting.getRemainingQuantity());
+            FillOutcome outcome = fillHandler.onFill(incoming, resting, fillQuantity, best.getPriceTicks());
+
+            if (outcome == FillOutcome.RESTING_REJECTED) {
+                removeResting(opposite, resting);
+                resting.setStatus(OrderStatus.CANCELLED);
+                continue;
+            }
+            if (outcome == FillOutcome.INCOMING_REJECTED) {
+                incomingRejected = true;
+                break;
+            }
+
+            incoming.fill(fillQuantity);
+            resting.fill(fillQuantity);
+            best.reduce(fillQuantity);
+            if (resting.getRemainingQuantity() == 0) {
+                removeResting(opposite, resting);
+            }
+        }
+
+        if (incoming.getRemainingQuantity() == 0) {
+            return;
+        }
+
+        if (incoming.getType() == OrderType.LIMIT && !incomingRejected) {
+            OrderBookSide own = (incoming.getSide() == TransactionType.BUY) ? bids : asks;
+            own.getOrCreate(incoming.getPriceTicks()).append(incoming);
+            restingOrders.put(incoming.getOrderId(), incoming);
+        } else {
+            incoming.setStatus(incoming.getFilledQuantity() == 0 && incomingRejected ?
+                    OrderStatus.REJECTED : OrderStatus.CANCELLED);
+        }
+    }
+
+
+    public Order getRestingOrder(int orderId) {
+        return restingOrders.get(orderId);
+    }
+
+
+    public boolean cancel(int orderId) {
+        Order order = restingOrders.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        OrderBookSide side = (order.getSide() == TransactionType.BUY) ? bids : asks;
+        removeResting(side, order);
+        order.setStatus(OrderStatus.CANCELLED);
+        return true;
+    }
+
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public OrderBookSide getBids() {
+        return bids;
+    }
+
+    public OrderBookSide getAsks() {
+        return asks;
+    }
+
+
+    private static boolean crosses(Order incoming, long restingPriceTicks) {
+        if (incoming.getType() == OrderType.MARKET) {
+            return true;
+        }
+        return (incoming.getSide() == TransactionType.BUY) ?
+                incoming.getPriceTicks() >= restingPriceTicks :
+                incoming.getPriceTicks() <= restingPriceTicks;
+    }
+
+
+    private void removeResting(OrderBookSide side, Order order) {
+        restingOrders.remove(order.getOrderId());
+        PriceLevel level = order.level;
+        level.remove(order);
+        if (level.isEmpty()) {
+            side.removeLevel(level);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * One side (bids or asks) of an order book
+ * Price levels live in parallel arrays sorted so the best price is last:
+ * the keys are the tick prices for bids and their negation for asks, which
+ * keeps lookups a primitive binary search and makes the best level O(1)
+ *
+ * @author Hend Okasha
+ */
+public class OrderBookSide {
+    private final boolean bids;
+    private long[] keys;
+    private PriceLevel[] levels;
+    private int size;
+
+
+    public OrderBookSide(boolean bids) {
+        this.bids = bids;
+        this.keys = new long[16];
+        this.levels = new PriceLevel[16];
+        this.size = 0;
+    }
+
+
+    public PriceLevel best() {
+        return (size == 0) ? null : levels[size - 1];
+    }
+
+
+    public PriceLevel get(long priceTicks) {
+        int index = search(keyOf(priceTicks));
+        return (index >= 0) ? levels[index] : null;
+    }
+
+
+    public PriceLevel getOrCreate(long priceTicks) {
+        long key = keyOf(priceTicks);
+        int index = search(key);
+        if (index >= 0) {
+            return levels[index];
+        }
+
+        int insertAt = -(index + 1);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+        System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+
+        PriceLevel level = new PriceLevel(priceTicks);
+        keys[insertAt] = key;
+        levels[insertAt] = level;
+        size++;
+        return level;
+    }
+
+
+    public void removeLevel(PriceLevel level) {
+        int index = search(keyOf(level.getPriceTicks()));
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(levels, index + 1, levels, index, size - index - 1);
+        size--;
+        levels[size] = null;
+    }
+
+
+    /**
+     * Level at the given depth, where 0 is the best price
+     */
+    public PriceLevel levelAt(int depth) {
+        return (depth < size) ? levels[size - 1 - depth] : null;
+    }
+
+    public int getLevelCount() {
+        return size;
+    }
+
+    public boolean isBids() {
+        return bids;
+    }
+
+
+    private long keyOf(long priceTicks) {
+        return bids ? priceTicks : -priceTicks;
+    }
+
+
+    private int search(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
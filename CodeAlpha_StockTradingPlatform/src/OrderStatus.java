@@ -0,0 +1,12 @@
+/**
+ * Enumeration for the lifecycle states of an order
+ *
+ * @author Hend Okasha
+ */
+public enum OrderStatus {
+    OPEN,
+    PARTIALLY_FILLED,
+    FILLED,
+    CANCELLED,
+    REJECTED
+}
@@ -0,0 +1,9 @@
+/**
+ * Enumeration for order types accepted by the matching engine
+ *
+ * @author Hend Okasha
+ */
+public enum OrderType {
+    LIMIT,
+    MARKET
+}
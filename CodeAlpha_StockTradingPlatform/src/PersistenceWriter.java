@@ -0,0 +1,471 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous, batching writer for an append-only file
+ * Callers encode records into a bounded pending buffer and return at once; a
+ * dedicated thread swaps it with a second buffer and writes everything queued
+ * so far through a FileChannel in one call, then forces it to disk according
+ * to the FsyncPolicy. Each record gets a sequence number, and awaitDurable
+ * blocks until that record is as durable as the policy makes it. When the
+ * pending buffer is full, append waits for the writer (back-pressure)
+ *
+ * rotate() moves the file aside after the records queued so far and continues
+ * in a fresh file, so the older records can be discarded once they are covered
+ * elsewhere (e.g. by a snapshot) without stopping appends
+ *
+ * A write or sync error stops the writer, as the file contents can no longer be
+ * trusted: later records are dropped and reported as not durable until
+ * rotate() starts a fresh file
+ *
+ * @author Hend Okasha
+ */
+public class PersistenceWriter {
+    public static final int DEFAULT_QUEUE_BYTES = 1 << 20;
+    // Records queued within this window go out in one write, unless a caller is waiting for them
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String file;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final ReentrantLock lock;
+    private final Condition recordsQueued;
+    private final Condition spaceFreed;
+    private final Condition progressMade;
+    private final Thread writerThread;
+
+    // Guarded by lock
+    private ByteBuffer pending;
+    private ByteBuffer flushing;
+    private FileChannel channel;
+    private long appendedSequence;
+    private long writtenSequence;
+    private long durableSequence;
+    private long batchStartNanos;
+    private boolean writerParked;
+    private boolean writing;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+    // Requested rotation: file to move the current one to, and the pending buffer position to split at
+    private String retiredFile;
+    private int rotationPosition;
+    private boolean rotationPending;
+    private boolean rotationSucceeded;
+
+    /**
+     * @param queueBytes          capacity of the pending buffer; appends wait while it is full
+     * @param fsyncIntervalMillis longest time written records stay unsynced under FsyncPolicy.INTERVAL
+     */
+    public PersistenceWriter(String file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int queueBytes) {
+        if (fsyncIntervalMillis <= 0 && fsyncPolicy == FsyncPolicy.INTERVAL) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.lock = new ReentrantLock();
+        this.recordsQueued = lock.newCondition();
+        this.spaceFreed = lock.newCondition();
+        this.progressMade = lock.newCondition();
+        this.pending = ByteBuffer.allocateDirect(queueBytes);
+        this.flushing = ByteBuffer.allocateDirect(queueBytes);
+
+        this.writerThread = new Thread(this::runWriter, "persistence-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+
+    /**
+     * Queues the text plus a line break, encoded as UTF-8
+     *
+     * @return the record's sequence number, for awaitDurable
+     * @throws IllegalArgumentException if the record can never fit in the queue
+     * @throws IllegalStateException    if the writer is closed
+     */
+    public long appendLine(CharSequence text) {
+        // Encoding needs at most three bytes per char (a surrogate pair takes four for two)
+        int maxBytes = text.length() * 3 + 1;
+        if (maxBytes > pending.capacity()) {
+            throw new IllegalArgumentException("Record longer than the persistence queue");
+        }
+
+        lock.lock();
+        try {
+            while (pending.remaining() < maxBytes && !closed) {
+                recordsQueued.signal();
+                spaceFreed.awaitUninterruptibly();
+            }
+            if (closed) {
+                throw new IllegalStateException("Persistence writer is closed");
+            }
+
+            if (pending.position() == 0) {
+                batchStartNanos = System.nanoTime();
+                // A busy writer comes back for the batch on its own, so only an idle one is woken
+                if (writerParked) {
+                    recordsQueued.signal();
+                }
+            }
+            encodeLine(text, pending);
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Sequence number of the last record queued so far
+     */
+    public long getAppendedSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Waits until the record is written and, unless the policy is NEVER, synced to disk
+     *
+     * @return false if a write error lost the record or the writer was closed first;
+     * records lost before a rotation count as durable once it is done
+     */
+    public boolean awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            if (durableSequence < sequence) {
+                syncRequested = true;
+                recordsQueued.signal();
+            }
+            while (durableSequence < sequence && failure == null && !closed) {
+                progressMade.awaitUninterruptibly();
+            }
+            return durableSequence >= sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Moves the file to retiredFile after the records queued so far; records
+     * appended from now on go to a fresh file under the original name
+     * The writer thread does the file work with its next batch, so this returns
+     * at once; awaitRotation waits for it. Rotating also clears a previous write
+     * error, as the fresh file no longer depends on the records it lost
+     *
+     * @throws IllegalStateException if the writer is closed or a rotation is still pending
+     */
+    public void rotate(String retiredFile) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Persistence writer is closed");
+            }
+            if (rotationPending) {
+                throw new IllegalStateException("Persistence writer is already rotating");
+            }
+            this.retiredFile = retiredFile;
+            rotationPosition = pending.position();
+            rotationPending = true;
+            recordsQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Waits until the writer has carried out the last rotate()
+     *
+     * @return true if the retired file holds every record queued before it (unless
+     * lost to a write error) and is synced, unless the policy is NEVER; false if
+     * the file could not be moved aside, in which case those records stay in the
+     * current file, or if the writer was closed first
+     */
+    public boolean awaitRotation() {
+        lock.lock();
+        try {
+            while (rotationPending && !closed) {
+                progressMade.awaitUninterruptibly();
+            }
+            return !rotationPending && rotationSucceeded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Writes and syncs everything queued, then stops the writer thread and closes the file
+     */
+    public void close() {
+        awaitDurable(getAppendedSequence());
+
+        lock.lock();
+        try {
+            closed = true;
+            // Records appended since the wait above go out in a final, synced batch
+            syncRequested = true;
+            recordsQueued.signal();
+            spaceFreed.signalAll();
+            progressMade.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void runWriter() {
+        long lastSync = System.nanoTime();
+        lock.lock();
+        try {
+            while (true) {
+                awaitBatch(lastSync);
+                if (closed && pending.position() == 0) {
+                    break;
+                }
+
+                // Take the whole queue as one batch and let appends refill the other buffer
+                ByteBuffer batch = pending;
+                pending = flushing;
+                flushing = batch;
+                long batchEnd = appendedSequence;
+                boolean sync = fsyncPolicy == FsyncPolicy.ALWAYS || syncRequested || syncDue(lastSync);
+                // A rotation splits this batch between the retired file and the fresh one
+                String retired = retiredFile;
+                int split = rotationPosition;
+                retiredFile = null;
+                boolean failed = failure != null;
+                syncRequested = false;
+                writing = true;
+                spaceFreed.signalAll();
+
+                lock.unlock();
+                IOException error = null;
+                boolean rotated = false;
+                try {
+                    batch.flip();
+                    if (retired != null) {
+                        rotated = rotate(batch, split, retired, failed);
+                        failed &= !rotated;
+                    }
+                    if (!failed) {
+                        write(batch, sync);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    batch.clear();
+                    lock.lock();
+                }
+
+                writing = false;
+                if (retired != null) {
+                    rotationPending = false;
+                    rotationSucceeded = rotated;
+                }
+                if (rotated) {
+                    failure = null;
+                }
+                if (error != null) {
+                    System.out.println("Error writing journal: " + error.getMessage());
+                    failure = error;
+                } else if (failure == null) {
+                    writtenSequence = batchEnd;
+                    if (sync || fsyncPolicy == FsyncPolicy.NEVER) {
+                        durableSequence = batchEnd;
+                        lastSync = System.nanoTime();
+                    }
+                }
+                progressMade.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeChannel();
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Waits until the batch window has passed, the queue is half full, a caller
+     * waits for durability, a sync falls due, a rotation is requested or the
+     * writer is closed; sleeps
+     * without a timeout when there is nothing to do
+     */
+    private void awaitBatch(long lastSync) throws InterruptedException {
+        while (!closed) {
+            long now = System.nanoTime();
+            boolean queued = pending.position() > 0;
+            boolean unsynced = durableSequence < writtenSequence;
+            if (retiredFile != null || (unsynced && syncDue(lastSync)) || (syncRequested && (queued || unsynced)) ||
+                    (queued && now - batchStartNanos >= BATCH_WINDOW_NANOS) ||
+                    pending.remaining() < pending.capacity() / 2) {
+                return;
+            }
+
+            long deadline = Long.MAX_VALUE;
+            if (queued) {
+                deadline = batchStartNanos + BATCH_WINDOW_NANOS;
+            }
+            if (unsynced && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                deadline = Math.min(deadline, lastSync + fsyncIntervalNanos);
+            }
+            if (deadline == Long.MAX_VALUE) {
+                writerParked = true;
+                recordsQueued.await();
+                writerParked = false;
+            } else {
+                recordsQueued.awaitNanos(Math.max(1, deadline - now));
+            }
+        }
+    }
+
+
+    private boolean syncDue(long lastSync) {
+        return fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastSync >= fsyncIntervalNanos;
+    }
+
+
+    /**
+     * Runs on the writer thread without the lock; the channel is only replaced under
+     * the lock while no write is in progress
+     */
+    private void write(ByteBuffer batch, boolean sync) throws IOException {
+        openChannel();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        if (sync && fsyncPolicy != FsyncPolicy.NEVER) {
+            channel.force(false);
+        }
+    }
+
+
+    /**
+     * Writes and syncs the part of the batch before the split, then moves the file
+     * aside and opens a fresh one for the rest; runs on the writer thread without the lock
+     *
+     * @param failed whether an earlier write error stopped the writer; the records
+     *               before the split are then dropped instead of written
+     * @return false if the file could not be moved aside, so it stays in use
+     */
+    private boolean rotate(ByteBuffer batch, int split, String retiredFile, boolean failed) throws IOException {
+        openChannel();
+        int end = batch.limit();
+        if (!failed) {
+            batch.limit(split);
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+            batch.limit(end);
+        }
+        batch.position(split);
+
+        // Closed first, as some platforms (Windows) cannot move an open file
+        channel.close();
+        channel = null;
+        try {
+            Files.move(Paths.get(file), Paths.get(retiredFile), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error rotating journal: " + e.getMessage());
+            return false;
+        }
+        openChannel();
+        syncDirectory(Paths.get(file).toAbsolutePath().getParent());
+        return true;
+    }
+
+
+    /**
+     * Makes the move and the fresh file durable
+     * Platforms that cannot open a directory (Windows) persist renames without it
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel directoryChannel;
+        try {
+            directoryChannel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel open = directoryChannel) {
+            open.force(true);
+        }
+    }
+
+
+    private void openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+
+    /**
+     * Encodes the text as UTF-8 plus a line break; the caller guarantees the room
+     */
+    private static void encodeLine(CharSequence text, ByteBuffer buffer) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '\n');
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Running market value and unrealized P&L of every user's portfolio
+ * Instead of revaluing holdings on each read, the valuator keeps one position
+ * table per symbol; a price tick adds (new price - last price) x quantity to the
+ * value of each holder of that symbol, and trades adjust only the positions
+ * they touch. Reading a user's value is O(1). All totals are Money micro-units,
+ * so the running sums never drift from a full revaluation
+ *
+ * The platform attaches the valuator to every listed stock, so each price change
+ * reaches it on the thread that made it, whether or not the quote is published
+ *
+ * @author Hend Okasha
+ */
+public class PortfolioValuator implements QuoteSink {
+    private final Function<String, Stock> stockLookup;
+    private final Map<String, SymbolPositions> positionsBySymbol;
+    private final IdTable<PortfolioValue> valuesByUser;
+
+    /**
+     * @param stockLookup supplies a symbol's current quote when its first position opens
+     */
+    public PortfolioValuator(Function<String, Stock> stockLookup) {
+        this.stockLookup = stockLookup;
+        this.positionsBySymbol = new ConcurrentHashMap<>();
+        this.valuesByUser = new IdTable<>();
+    }
+
+
+    /**
+     * Marks every holder of the quote's symbol to the new price
+     */
+    @Override
+    public void onQuote(Quote quote) {
+        SymbolPositions positions = positionsBySymbol.get(normalizeSymbol(quote.getSymbol()));
+        if (positions != null) {
+            positions.reprice(quote);
+        }
+    }
+
+
+    /**
+     * Records the user's new position in the symbol; a quantity of 0 closes it
+     *
+     * @param costBasisMicros total purchase cost of the position
+     */
+    public void updatePosition(int userId, String symbol, int quantity, long costBasisMicros) {
+        String key = normalizeSymbol(symbol);
+        PortfolioValue value = valuesByUser.computeIfAbsent(userId, id -> new PortfolioValue());
+        SymbolPositions positions = positionsBySymbol.get(key);
+        if (positions == null) {
+            positions = positionsBySymbol.computeIfAbsent(key, s -> new SymbolPositions(stockLookup.apply(s)));
+        }
+        positions.update(userId, value, quantity, costBasisMicros);
+    }
+
+
+    /**
+     * Discards all positions and values them afresh from the users' holdings
+     */
+    public synchronized void rebuild(Collection<User> users) {
+        positionsBySymbol.clear();
+        valuesByUser.clear();
+
+        for (User user : users) {
+            for (StockHolding holding : user.getPortfolio()) {
+                updatePosition(user.getUserId(), holding.getSymbol(),
+                        holding.getQuantity(), holding.getTotalInvestmentMicros());
+            }
+        }
+    }
+
+
+    /**
+     * Values the positions opened before the stock was listed at its current quote
+     */
+    public void stockListed(Stock stock) {
+        // Waits for a position table that is still being created for the symbol
+        positionsBySymbol.computeIfPresent(normalizeSymbol(stock.getSymbol()), (symbol, positions) -> {
+            positions.catchUp(stock);
+            return positions;
+        });
+    }
+
+
+    public double getMarketValue(int userId) {
+        return Money.toDouble(getMarketValueMicros(userId));
+    }
+
+
+    public double getCostBasis(int userId) {
+        return Money.toDouble(getCostBasisMicros(userId));
+    }
+
+
+    public double getUnrealizedProfitLoss(int userId) {
+        return Money.toDouble(getMarketValueMicros(userId) - getCostBasisMicros(userId));
+    }
+
+
+    public long getMarketValueMicros(int userId) {
+        PortfolioValue value = valuesByUser.get(userId);
+        return (value != null) ? value.marketValue.sum() : 0;
+    }
+
+
+    public long getCostBasisMicros(int userId) {
+        PortfolioValue value = valuesByUser.get(userId);
+        return (value != null) ? value.costBasis.sum() : 0;
+    }
+
+
+    private static String normalizeSymbol(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Running totals of one user's portfolio
+     * Several symbols may update a user at once, so totals are adders
+     */
+    private static class PortfolioValue {
+        final LongAdder marketValue = new LongAdder();
+        final LongAdder costBasis = new LongAdder();
+    }
+
+
+    /**
+     * Holders of one symbol, with their quantities in parallel arrays
+     * Repricing and position updates for a symbol are serialized on this table
+     */
+    private static class SymbolPositions {
+        private final IntIntMap slotByUser = new IntIntMap(4);
+        private PortfolioValue[] owners = new PortfolioValue[4];
+        private int[] userIds = new int[4];
+        private int[] quantities = new int[4];
+        private long[] costBases = new long[4];
+        private int count;
+        // Stock the last price came from; null while the symbol is not listed
+        private Stock stock;
+        private long lastPrice;
+        private long lastVersion = -1;
+
+        SymbolPositions(Stock stock) {
+            if (stock != null) {
+                Quote quote = stock.getQuote();
+                this.stock = stock;
+                this.lastPrice = quote.getPriceMicros();
+                this.lastVersion = quote.getVersion();
+            }
+        }
+
+
+        synchronized void reprice(Quote quote) {
+            // Quotes can arrive out of order from different publishers; only move forward
+            if (quote.getVersion() <= lastVersion) {
+                return;
+            }
+            apply(quote);
+        }
+
+
+        /**
+         * Adopts the stock's current quote if it is newer than the last one applied
+         * A different stock object for the symbol restarts the version sequence
+         */
+        synchronized void catchUp(Stock current) {
+            if (current == null) {
+                return;
+            }
+            Quote quote = current.getQuote();
+            if (current != stock) {
+                stock = current;
+                apply(quote);
+            } else if (quote.getVersion() > lastVersion) {
+                apply(quote);
+            }
+        }
+
+
+        private void apply(Quote quote) {
+            long delta = quote.getPriceMicros() - lastPrice;
+            for (int i = 0; i < count; i++) {
+                owners[i].marketValue.add(delta * quantities[i]);
+            }
+            lastPrice = quote.getPriceMicros();
+            lastVersion = quote.getVersion();
+        }
+
+
+        synchronized void update(int userId, PortfolioValue value, int quantity, long costBasis) {
+            int slot = slotByUser.get(userId);
+
+            if (slot == IntIntMap.MISSING) {
+                if (quantity == 0) {
+                    return;
+                }
+                if (count == owners.length) {
+                    owners = Arrays.copyOf(owners, count * 2);
+                    userIds = Arrays.copyOf(userIds, count * 2);
+                    quantities = Arrays.copyOf(quantities, count * 2);
+                    costBases = Arrays.copyOf(costBases, count * 2);
+                }
+                slot = count++;
+                owners[slot] = value;
+                userIds[slot] = userId;
+                slotByUser.put(userId, slot);
+            }
+
+            value.marketValue.add((quantity - quantities[slot]) * lastPrice);
+            value.costBasis.add(costBasis - costBases[slot]);
+            quantities[slot] = quantity;
+            costBases[slot] = costBasis;
+
+            if (quantity == 0) {
+                remove(slot);
+            }
+        }
+
+
+        /**
+         * Moves the last position into the freed slot
+         */
+        private void remove(int slot) {
+            int last = --count;
+            slotByUser.remove(userIds[slot]);
+
+            if (slot != last) {
+                owners[slot] = owners[last];
+                userIds[slot] = userIds[last];
+                quantities[slot] = quantities[last];
+                costBases[slot] = costBases[last];
+                slotByUser.put(userIds[slot], slot);
+            }
+            owners[last] = null;
+            quantities[last] = 0;
+            costBases[last] = 0;
+        }
+    }
+}
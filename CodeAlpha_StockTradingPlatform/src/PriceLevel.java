@@ -0,0 +1,77 @@
+/**
+ * All resting orders at one price, in time priority
+ * Orders are chained through their own links, so append and removal are O(1)
+ *
+ * @author Hend Okasha
+ */
+public class PriceLevel {
+    private final long priceTicks;
+    private Order head;
+    private Order tail;
+    private long totalQuantity;
+    private int orderCount;
+
+
+    public PriceLevel(long priceTicks) {
+        this.priceTicks = priceTicks;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public Order getHead() {
+        return head;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+
+    void append(Order order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        totalQuantity += order.getRemainingQuantity();
+        orderCount++;
+    }
+
+
+    void remove(Order order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        totalQuantity -= order.getRemainingQuantity();
+        orderCount--;
+        order.prev = null;
+        order.next = null;
+        order.level = null;
+    }
+
+
+    void reduce(int filledQuantity) {
+        totalQuantity -= filledQuantity;
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Stochastic process that moves simulated prices
+ * Models work on a batch of prices held in a primitive array and update them
+ * in place; per-symbol parameters are looked up by the symbol's position in
+ * the platform's stock list, which never changes once a stock is listed
+ *
+ * @author Hend Okasha
+ */
+public interface PriceModel {
+
+    /**
+     * Advances prices[0, count) by dtSeconds
+     *
+     * @param symbolIndexes stock list position of each price
+     * @param shocks        one standard normal draw per price, already correlated across symbols
+     * @param random        generator for any further randomness the model needs
+     */
+    void advance(double[] prices, int[] symbolIndexes, int count, double dtSeconds,
+                 double[] shocks, RandomGenerator random);
+}
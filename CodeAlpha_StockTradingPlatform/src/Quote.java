@@ -0,0 +1,91 @@
+/**
+ * Immutable price snapshot of a stock
+ * A stock publishes a new quote on every price change, so a reader always sees
+ * a matching price pair; the version increases by one with each change and lets
+ * a trade confirm that it was priced against the latest quote. Prices are
+ * held in Money micro-units
+ *
+ * @author Hend Okasha
+ */
+public final class Quote {
+    /** Expected version that accepts whatever quote is current */
+    public static final long ANY_VERSION = -1;
+
+    private final String symbol;
+    private final long version;
+    private final long priceMicros;
+    private final long previousPriceMicros;
+    private final long timestampMillis;
+
+
+    public Quote(String symbol, long version, long priceMicros, long previousPriceMicros, long timestampMillis) {
+        this.symbol = symbol;
+        this.version = version;
+        this.priceMicros = priceMicros;
+        this.previousPriceMicros = previousPriceMicros;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double getPrice() {
+        return Money.toDouble(priceMicros);
+    }
+
+    public double getPreviousPrice() {
+        return Money.toDouble(previousPriceMicros);
+    }
+
+    public long getPriceMicros() {
+        return priceMicros;
+    }
+
+    public long getPreviousPriceMicros() {
+        return previousPriceMicros;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+
+    /**
+     * Quote that follows this one at the given price
+     */
+    public Quote next(double newPrice) {
+        return next(newPrice, System.currentTimeMillis());
+    }
+
+    public Quote next(double newPrice, long newTimestampMillis) {
+        return nextMicros(Money.fromDouble(newPrice), newTimestampMillis);
+    }
+
+    public Quote nextMicros(long newPriceMicros, long newTimestampMillis) {
+        return new Quote(symbol, version + 1, newPriceMicros, priceMicros, newTimestampMillis);
+    }
+
+
+    public double getChangePercent() {
+        if (previousPriceMicros == 0) {
+            return 0;
+        }
+        return ((priceMicros - previousPriceMicros) / (double) previousPriceMicros) * 100;
+    }
+
+    @Override
+    public String toString() {
+        return "Quote{" +
+                "symbol='" + symbol + '\'' +
+                ", version=" + version +
+                ", price=" + Money.format(priceMicros) +
+                ", previousPrice=" + Money.format(previousPriceMicros) +
+                ", timestampMillis=" + timestampMillis +
+                '}';
+    }
+}
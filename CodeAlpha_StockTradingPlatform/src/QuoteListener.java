@@ -0,0 +1,13 @@
+import java.util.List;
+
+/**
+ * Receives price updates from the market data bus
+ * Updates arrive in batches on a delivery thread, never on the tick thread;
+ * while a listener is busy, newer quotes replace older ones for the same
+ * symbol, so a batch holds at most one (the latest) quote per symbol
+ *
+ * @author Hend Okasha
+ */
+public interface QuoteListener {
+    void onQuotes(List<Quote> quotes);
+}
@@ -0,0 +1,10 @@
+/**
+ * Synchronous receiver of quotes
+ * Used for taps that run on the publishing (tick) thread and for draining
+ * quote caches; implementations must be quick and must never block
+ *
+ * @author Hend Okasha
+ */
+public interface QuoteSink {
+    void onQuote(Quote quote);
+}
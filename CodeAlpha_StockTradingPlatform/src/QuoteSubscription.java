@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener's registration on the market data bus
+ * Published quotes are parked in a per-symbol slot that keeps only the latest
+ * quote; at most one delivery task per subscription is queued at a time, and
+ * it hands the listener everything parked since the previous batch
+ *
+ * @author Hend Okasha
+ */
+public class QuoteSubscription implements Runnable {
+    private final QuoteListener listener;
+    private final Set<String> symbols;
+    private final Executor deliveryExecutor;
+    private final Map<String, Quote> pending;
+    private final AtomicBoolean scheduled;
+    private final LongAdder coalescedCount;
+    private volatile boolean cancelled;
+    private Runnable onCancel;
+
+
+    QuoteSubscription(QuoteListener listener, Set<String> symbols, Executor deliveryExecutor) {
+        this.listener = listener;
+        this.symbols = symbols;
+        this.deliveryExecutor = deliveryExecutor;
+        this.pending = new ConcurrentHashMap<>();
+        this.scheduled = new AtomicBoolean();
+        this.coalescedCount = new LongAdder();
+    }
+
+
+    /**
+     * Called on the publishing thread; only parks the quote and, if needed, queues a delivery
+     */
+    void offer(Quote quote) {
+        if (cancelled) {
+            return;
+        }
+
+        Quote replaced = pending.put(quote.getSymbol(), quote);
+        if (replaced != null) {
+            if (replaced.getVersion() > quote.getVersion()) {
+                // Two publishers raced; keep the newer quote
+                pending.merge(quote.getSymbol(), replaced, QuoteSubscription::newer);
+            }
+            coalescedCount.increment();
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            deliveryExecutor.execute(this);
+        }
+    }
+
+
+    /**
+     * Delivers one batch of parked quotes
+     */
+    @Override
+    public void run() {
+        List<Quote> batch = new ArrayList<>(pending.size());
+        for (Quote quote : pending.values()) {
+            // A quote replaced in the meantime stays parked for the next batch
+            if (pending.remove(quote.getSymbol(), quote)) {
+                batch.add(quote);
+            }
+        }
+
+        if (!batch.isEmpty() && !cancelled) {
+            try {
+                listener.onQuotes(Collections.unmodifiableList(batch));
+            } catch (RuntimeException e) {
+                System.out.println("Error in market data listener: " + e.getMessage());
+            }
+        }
+
+        scheduled.set(false);
+        if (!pending.isEmpty() && !cancelled && scheduled.compareAndSet(false, true)) {
+            deliveryExecutor.execute(this);
+        }
+    }
+
+
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        pending.clear();
+        if (onCancel != null) {
+            onCancel.run();
+        }
+    }
+
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+
+    /**
+     * Symbols this subscription follows; empty means every symbol
+     */
+    public Set<String> getSymbols() {
+        return symbols;
+    }
+
+
+    /**
+     * Number of quotes superseded before they could be delivered
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+
+    void setOnCancel(Runnable onCancel) {
+        this.onCancel = onCancel;
+    }
+
+
+    private static Quote newer(Quote a, Quote b) {
+        return (a.getVersion() >= b.getVersion()) ? a : b;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Outcome of a tick replay: how much was replayed and how fast
+ *
+ * @author Hend Okasha
+ */
+public class ReplayStats {
+    private final long tickCount;
+    private final long skippedCount;
+    private final long bytesRead;
+    private final long elapsedNanos;
+    private final long recordedSpanMillis;
+
+
+    public ReplayStats(long tickCount, long skippedCount, long bytesRead,
+                       long elapsedNanos, long recordedSpanMillis) {
+        this.tickCount = tickCount;
+        this.skippedCount = skippedCount;
+        this.bytesRead = bytesRead;
+        this.elapsedNanos = elapsedNanos;
+        this.recordedSpanMillis = recordedSpanMillis;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Ticks for symbols that are not listed on the platform
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Time between the first and the last recorded tick
+     */
+    public long getRecordedSpanMillis() {
+        return recordedSpanMillis;
+    }
+
+
+    public double getTicksPerSecond() {
+        return (elapsedNanos == 0) ? 0 : tickCount * 1e9 / elapsedNanos;
+    }
+
+
+    public double getMegabytesPerSecond() {
+        return (elapsedNanos == 0) ? 0 : bytesRead / 1e6 * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Replayed %d ticks (%d skipped) in %.3f s: %.0f ticks/s, %.1f MB/s, recorded span %.3f s",
+                tickCount, skippedCount, elapsedNanos / 1e9, getTicksPerSecond(),
+                getMegabytesPerSecond(), recordedSpanMillis / 1e3);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Firm-wide exposure, concentration and scenario P&L over a RiskSnapshot
+ * Work is split across the fork-join pool with parallel streams: holdings in
+ * fixed chunks for per-symbol exposure (each chunk sums into its own array and
+ * the arrays are merged), users one by one for concentration (each user's
+ * holdings are contiguous, so no merging is needed) and scenarios one by one
+ *
+ * @author Hend Okasha
+ */
+public class RiskAggregator {
+    private static final int MIN_CHUNK_HOLDINGS = 16_384;
+
+    /**
+     * @param topUsers  how many of the most concentrated users to report
+     * @param scenarios per-symbol returns for each scenario, indexed like the snapshot's symbols;
+     *                  may be empty
+     */
+    public RiskReport aggregate(RiskSnapshot snapshot, int topUsers, double[][] scenarios) {
+        long startNanos = System.nanoTime();
+        int symbolCount = snapshot.getSymbolCount();
+
+        double[] exposures = symbolExposures(snapshot);
+        double totalCost = IntStream.range(0, snapshot.getHoldingCount()).parallel()
+                .mapToDouble(snapshot::getHoldingCost)
+                .sum();
+        double totalValue = 0;
+        for (double exposure : exposures) {
+            totalValue += exposure;
+        }
+
+        // Largest position and portfolio value per user
+        int userCount = snapshot.getUserCount();
+        double[] largestPositions = new double[userCount];
+        double[] portfolioValues = new double[userCount];
+        IntStream.range(0, userCount).parallel().forEach(user -> {
+            double largest = 0;
+            double value = 0;
+            for (int h = snapshot.getUserStart(user); h < snapshot.getUserStart(user + 1); h++) {
+                double position = snapshot.getHoldingQuantity(h) * snapshot.getPrice(snapshot.getHoldingSymbol(h));
+                value += position;
+                largest = Math.max(largest, position);
+            }
+            largestPositions[user] = largest;
+            portfolioValues[user] = value;
+        });
+
+        int[] topIndexes = topUsers(largestPositions, topUsers);
+        int[] topUserIds = new int[topIndexes.length];
+        double[] topLargest = new double[topIndexes.length];
+        double[] topConcentration = new double[topIndexes.length];
+        for (int rank = 0; rank < topIndexes.length; rank++) {
+            int user = topIndexes[rank];
+            topUserIds[rank] = snapshot.getUserId(user);
+            topLargest[rank] = largestPositions[user];
+            topConcentration[rank] = (portfolioValues[user] > 0) ? largestPositions[user] / portfolioValues[user] : 0;
+        }
+
+        // Positions are linear in price, so a scenario's P&L only needs the per-symbol exposures
+        double[] scenarioProfitLoss = new double[scenarios.length];
+        IntStream.range(0, scenarios.length).parallel().forEach(k -> {
+            double[] returns = scenarios[k];
+            double profitLoss = 0;
+            for (int s = 0; s < symbolCount; s++) {
+                profitLoss += exposures[s] * returns[s];
+            }
+            scenarioProfitLoss[k] = profitLoss;
+        });
+
+        String[] symbols = new String[symbolCount];
+        for (int s = 0; s < symbolCount; s++) {
+            symbols[s] = snapshot.getSymbol(s);
+        }
+
+        return new RiskReport(symbols, exposures, totalValue, totalCost, topUserIds, topLargest,
+                topConcentration, scenarioProfitLoss, System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Random one-day style scenarios: each symbol's return is normal with the given
+     * volatility, and symbols share a common market factor with the given correlation
+     */
+    public static double[][] monteCarloScenarios(int scenarioCount, int symbolCount,
+                                                 double volatility, double correlation, long seed) {
+        if (correlation < 0 || correlation > 1) {
+            throw new IllegalArgumentException("Correlation must be between 0 and 1");
+        }
+
+        double[][] scenarios = new double[scenarioCount][symbolCount];
+        double common = Math.sqrt(correlation);
+        double own = Math.sqrt(1 - correlation);
+        SplittableRandom root = new SplittableRandom(seed);
+
+        // One generator per scenario, split up front so the result does not depend on threading
+        SplittableRandom[] randoms = new SplittableRandom[scenarioCount];
+        for (int k = 0; k < scenarioCount; k++) {
+            randoms[k] = root.split();
+        }
+
+        IntStream.range(0, scenarioCount).parallel().forEach(k -> {
+            SplittableRandom random = randoms[k];
+            double market = random.nextGaussian();
+            for (int s = 0; s < symbolCount; s++) {
+                scenarios[k][s] = volatility * (common * market + own * random.nextGaussian());
+            }
+        });
+        return scenarios;
+    }
+
+
+    /**
+     * A single scenario in which every symbol moves by the same return, e.g. -0.10
+     */
+    public static double[] uniformShock(int symbolCount, double shockReturn) {
+        double[] returns = new double[symbolCount];
+        Arrays.fill(returns, shockReturn);
+        return returns;
+    }
+
+
+    private static double[] symbolExposures(RiskSnapshot snapshot) {
+        int holdingCount = snapshot.getHoldingCount();
+        int symbolCount = snapshot.getSymbolCount();
+        int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4,
+                holdingCount / MIN_CHUNK_HOLDINGS));
+        int chunkSize = (holdingCount + chunks - 1) / chunks;
+
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    double[] exposures = new double[symbolCount];
+                    int end = Math.min(holdingCount, (chunk + 1) * chunkSize);
+                    for (int h = chunk * chunkSize; h < end; h++) {
+                        int symbol = snapshot.getHoldingSymbol(h);
+                        exposures[symbol] += snapshot.getHoldingQuantity(h) * snapshot.getPrice(symbol);
+                    }
+                    return exposures;
+                })
+                .reduce(new double[symbolCount], (a, b) -> {
+                    double[] merged = new double[symbolCount];
+                    for (int s = 0; s < symbolCount; s++) {
+                        merged[s] = a[s] + b[s];
+                    }
+                    return merged;
+                });
+    }
+
+
+    /**
+     * Indexes of the n largest values, largest first
+     */
+    private static int[] topUsers(double[] values, int n) {
+        int count = Math.max(0, Math.min(n, values.length));
+        PriorityQueue<Integer> smallestFirst = new PriorityQueue<>(count + 1,
+                (a, b) -> Double.compare(values[a], values[b]));
+
+        for (int i = 0; i < values.length && count > 0; i++) {
+            if (smallestFirst.size() < count) {
+                smallestFirst.add(i);
+            } else if (values[i] > values[smallestFirst.peek()]) {
+                smallestFirst.poll();
+                smallestFirst.add(i);
+            }
+        }
+
+        int[] top = new int[smallestFirst.size()];
+        for (int rank = top.length - 1; rank >= 0; rank--) {
+            top[rank] = smallestFirst.poll();
+        }
+        return top;
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Firm-wide risk figures produced by the RiskAggregator
+ * Exposures are market values; scenario P&L is the change in total market
+ * value under each scenario, and value at risk is reported as a positive loss
+ *
+ * @author Hend Okasha
+ */
+public class RiskReport {
+    private final String[] symbols;
+    private final double[] symbolExposures;
+    private final double totalMarketValue;
+    private final double totalCostBasis;
+    private final int[] topUserIds;
+    private final double[] topUserLargestPositions;
+    private final double[] topUserConcentrations;
+    private final double[] scenarioProfitLoss;
+    private final long elapsedNanos;
+
+
+    public RiskReport(String[] symbols, double[] symbolExposures, double totalMarketValue, double totalCostBasis,
+                      int[] topUserIds, double[] topUserLargestPositions, double[] topUserConcentrations,
+                      double[] scenarioProfitLoss, long elapsedNanos) {
+        this.symbols = symbols;
+        this.symbolExposures = symbolExposures;
+        this.totalMarketValue = totalMarketValue;
+        this.totalCostBasis = totalCostBasis;
+        this.topUserIds = topUserIds;
+        this.topUserLargestPositions = topUserLargestPositions;
+        this.topUserConcentrations = topUserConcentrations;
+        this.scenarioProfitLoss = scenarioProfitLoss;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public String getSymbol(int index) {
+        return symbols[index];
+    }
+
+    public double getExposure(int index) {
+        return symbolExposures[index];
+    }
+
+    public double getTotalMarketValue() {
+        return totalMarketValue;
+    }
+
+    public double getTotalCostBasis() {
+        return totalCostBasis;
+    }
+
+    public double getUnrealizedProfitLoss() {
+        return totalMarketValue - totalCostBasis;
+    }
+
+
+    /**
+     * Users ranked by their largest single-symbol position, largest first
+     */
+    public int getTopUserCount() {
+        return topUserIds.length;
+    }
+
+    public int getTopUserId(int rank) {
+        return topUserIds[rank];
+    }
+
+    public double getTopUserLargestPosition(int rank) {
+        return topUserLargestPositions[rank];
+    }
+
+    /**
+     * Share of the user's portfolio value in their largest position, from 0 to 1
+     */
+    public double getTopUserConcentration(int rank) {
+        return topUserConcentrations[rank];
+    }
+
+
+    public int getScenarioCount() {
+        return scenarioProfitLoss.length;
+    }
+
+    public double getScenarioProfitLoss(int scenario) {
+        return scenarioProfitLoss[scenario];
+    }
+
+
+    /**
+     * Loss not exceeded in the given fraction of scenarios (e.g. 0.99)
+     */
+    public double getValueAtRisk(double confidence) {
+        if (scenarioProfitLoss.length == 0) {
+            return 0;
+        }
+        double[] sorted = scenarioProfitLoss.clone();
+        Arrays.sort(sorted);
+        return -sorted[tailIndex(sorted.length, confidence)];
+    }
+
+
+    /**
+     * Average loss over the scenarios beyond the value at risk
+     */
+    public double getExpectedShortfall(double confidence) {
+        if (scenarioProfitLoss.length == 0) {
+            return 0;
+        }
+        double[] sorted = scenarioProfitLoss.clone();
+        Arrays.sort(sorted);
+        int tail = tailIndex(sorted.length, confidence);
+
+        double sum = 0;
+        for (int i = 0; i <= tail; i++) {
+            sum += sorted[i];
+        }
+        return -sum / (tail + 1);
+    }
+
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+
+    private static int tailIndex(int scenarios, double confidence) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1");
+        }
+        return Math.min(scenarios - 1, (int) Math.floor(scenarios * (1 - confidence)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RiskReport{symbols=%d, marketValue=%.2f, costBasis=%.2f, unrealizedPL=%.2f, " +
+                        "scenarios=%d, VaR99=%.2f, elapsedMillis=%.3f}",
+                symbols.length, totalMarketValue, totalCostBasis, getUnrealizedProfitLoss(),
+                scenarioProfitLoss.length, scenarioProfitLoss.length > 0 ? getValueAtRisk(0.99) : 0.0,
+                elapsedNanos / 1e6);
+    }
+}
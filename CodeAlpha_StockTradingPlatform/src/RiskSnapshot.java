@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Point-in-time copy of all holdings in primitive arrays, for risk aggregation
+ * Holdings are stored column-wise and grouped by user: the holdings of user u
+ * are positions userStart[u] to userStart[u + 1] - 1. Symbols are dictionary
+ * encoded, with one price per symbol
+ *
+ * @author Hend Okasha
+ */
+public class RiskSnapshot {
+    private final String[] symbols;
+    private final double[] prices;
+    private final int[] userIds;
+    private final int[] userStart;
+    private final int[] holdingSymbols;
+    private final int[] holdingQuantities;
+    private final double[] holdingCosts;
+
+
+    public RiskSnapshot(String[] symbols, double[] prices, int[] userIds, int[] userStart,
+                        int[] holdingSymbols, int[] holdingQuantities, double[] holdingCosts) {
+        if (symbols.length != prices.length || userStart.length != userIds.length + 1 ||
+                holdingSymbols.length != holdingQuantities.length || holdingSymbols.length != holdingCosts.length ||
+                userStart[userIds.length] != holdingSymbols.length) {
+            throw new IllegalArgumentException("Snapshot arrays do not line up");
+        }
+        this.symbols = symbols;
+        this.prices = prices;
+        this.userIds = userIds;
+        this.userStart = userStart;
+        this.holdingSymbols = holdingSymbols;
+        this.holdingQuantities = holdingQuantities;
+        this.holdingCosts = holdingCosts;
+    }
+
+
+    /**
+     * Copies the users' holdings, priced at each stock's current quote
+     * Each holding is read once without locking, so the copy is consistent per
+     * holding rather than across the whole book, which is what risk figures need
+     */
+    public static RiskSnapshot capture(Collection<User> users, Function<String, Stock> stockLookup) {
+        Map<String, Integer> symbolIds = new HashMap<>();
+        List<String> symbols = new ArrayList<>();
+        List<Double> prices = new ArrayList<>();
+
+        int holdingCount = 0;
+        for (User user : users) {
+            holdingCount += user.getPortfolio().size();
+        }
+
+        int[] userIds = new int[users.size()];
+        int[] userStart = new int[users.size() + 1];
+        int[] holdingSymbols = new int[holdingCount];
+        int[] holdingQuantities = new int[holdingCount];
+        double[] holdingCosts = new double[holdingCount];
+
+        int u = 0;
+        int h = 0;
+        for (User user : users) {
+            if (u == userIds.length) {
+                break;
+            }
+            userIds[u] = user.getUserId();
+            userStart[u] = h;
+
+            for (StockHolding holding : user.getPortfolio()) {
+                if (h == holdingCount) {
+                    break;
+                }
+
+                String key = holding.getSymbol().trim().toUpperCase(Locale.ROOT);
+                Integer symbolId = symbolIds.get(key);
+                if (symbolId == null) {
+                    symbolId = symbols.size();
+                    symbolIds.put(key, symbolId);
+                    symbols.add(key);
+                    Stock stock = stockLookup.apply(key);
+                    prices.add((stock != null) ? stock.getCurrentPrice() : 0.0);
+                }
+
+                int quantity = holding.getQuantity();
+                holdingSymbols[h] = symbolId;
+                holdingQuantities[h] = quantity;
+                holdingCosts[h] = quantity * holding.getPurchasePrice();
+                h++;
+            }
+            u++;
+        }
+
+        // Users or holdings removed while copying leave the arrays longer than needed
+        userStart[u] = h;
+
+        double[] priceArray = new double[prices.size()];
+        for (int i = 0; i < priceArray.length; i++) {
+            priceArray[i] = prices.get(i);
+        }
+
+        return new RiskSnapshot(symbols.toArray(new String[0]), priceArray,
+                Arrays.copyOf(userIds, u), Arrays.copyOf(userStart, u + 1),
+                Arrays.copyOf(holdingSymbols, h), Arrays.copyOf(holdingQuantities, h),
+                Arrays.copyOf(holdingCosts, h));
+    }
+
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public String getSymbol(int symbolId) {
+        return symbols[symbolId];
+    }
+
+    public double getPrice(int symbolId) {
+        return prices[symbolId];
+    }
+
+    public int getUserCount() {
+        return userIds.length;
+    }
+
+    public int getUserId(int user) {
+        return userIds[user];
+    }
+
+    public int getHoldingCount() {
+        return holdingSymbols.length;
+    }
+
+    int getUserStart(int user) {
+        return userStart[user];
+    }
+
+    int getHoldingSymbol(int holding) {
+        return holdingSymbols[holding];
+    }
+
+    int getHoldingQuantity(int holding) {
+        return holdingQuantities[holding];
+    }
+
+    double getHoldingCost(int holding) {
+        return holdingCosts[holding];
+    }
+}
@@ -1,20 +1,25 @@
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Represents a stock in the trading platform with its properties
+ * Prices are published as immutable quotes swapped atomically, so
+ * readers never block and never see a half-updated price pair
  *
  * @author Hend Okasha
  */
 public class Stock {
     private String symbol;
     private String name;
-    private double currentPrice;
-    private double previousPrice;
+    private final AtomicReference<Quote> quote;
+    // Told of every new quote on the thread that set it; see setPriceSink
+    private volatile QuoteSink priceSink;
 
 
     public Stock(String symbol, String name, double currentPrice) {
         this.symbol = symbol;
         this.name = name;
-        this.currentPrice = currentPrice;
-        this.previousPrice = currentPrice;
+        long priceMicros = Money.fromDouble(currentPrice);
+        this.quote = new AtomicReference<>(new Quote(symbol, 0, priceMicros, priceMicros, System.currentTimeMillis()));
     }
 
     public String getSymbol() {
@@ -25,34 +30,97 @@ public class Stock {
         return name;
     }
 
+    /**
+     * Latest quote; read it once when several price fields must agree
+     */
+    public Quote getQuote() {
+        return quote.get();
+    }
+
     public double getCurrentPrice() {
-        return currentPrice;
+        return quote.get().getPrice();
     }
 
     public double getPreviousPrice() {
-        return previousPrice;
+        return quote.get().getPreviousPrice();
+    }
+
+    public long getCurrentPriceMicros() {
+        return quote.get().getPriceMicros();
+    }
+
+    public long getQuoteVersion() {
+        return quote.get().getVersion();
     }
 
     public void setCurrentPrice(double currentPrice) {
-        this.previousPrice = this.currentPrice;
-        this.currentPrice = currentPrice;
+        setCurrentPrice(currentPrice, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Publishes a price with an explicit timestamp, e.g. when replaying recorded ticks
+     */
+    public Quote setCurrentPrice(double currentPrice, long timestampMillis) {
+        return setCurrentPriceMicros(Money.fromDouble(currentPrice), timestampMillis);
+    }
+
+    public Quote setCurrentPriceMicros(long priceMicros, long timestampMillis) {
+        Quote current;
+        Quote next;
+        do {
+            current = quote.get();
+            next = current.nextMicros(priceMicros, timestampMillis);
+        } while (!quote.compareAndSet(current, next));
+        notifyPriceSink(next);
+        return next;
+    }
+
+
+    /**
+     * Publishes a new price only if the quote is still the one the caller priced from
+     *
+     * @return the new quote, or null if another update came first
+     */
+    public Quote compareAndSetPrice(Quote expected, double newPrice) {
+        Quote next = expected.next(newPrice);
+        if (!quote.compareAndSet(expected, next)) {
+            return null;
+        }
+        notifyPriceSink(next);
+        return next;
+    }
+
+
+    /**
+     * Sets the tap called with every quote this stock swaps in, whoever sets the price,
+     * so state derived from the price does not depend on the quote being published
+     */
+    void setPriceSink(QuoteSink priceSink) {
+        this.priceSink = priceSink;
     }
 
 
     public double getPriceChangePercent() {
-        if (previousPrice == 0) {
-            return 0;
+        return quote.get().getChangePercent();
+    }
+
+    private void notifyPriceSink(Quote next) {
+        QuoteSink sink = priceSink;
+        if (sink != null) {
+            sink.onQuote(next);
         }
-        return ((currentPrice - previousPrice) / previousPrice) * 100;
     }
 
     @Override
     public String toString() {
+        Quote current = quote.get();
         return "Stock{" +
                 "symbol='" + symbol + '\'' +
                 ", name='" + name + '\'' +
-                ", currentPrice=" + currentPrice +
-                ", previousPrice=" + previousPrice +
+                ", currentPrice=" + Money.format(current.getPriceMicros()) +
+                ", previousPrice=" + Money.format(current.getPreviousPriceMicros()) +
+                ", quoteVersion=" + current.getVersion() +
                 '}';
     }
 }
@@ -3,20 +3,21 @@ import java.time.LocalDate;
 /**
  * Represents a stock holding in a user's portfolio
  * Contains information about owned shares
+ * The average purchase price is held in Money micro-units
  *
  * @author Hend Okasha
  */
 public class StockHolding  {
     private String symbol;
-    private int quantity;
-    private double purchasePrice;
+    private volatile int quantity;
+    private volatile long purchasePriceMicros;
     private LocalDate purchaseDate;
 
 
-    public StockHolding(String symbol, int quantity, double purchasePrice, LocalDate purchaseDate) {
+    public StockHolding(String symbol, int quantity, long purchasePriceMicros, LocalDate purchaseDate) {
         this.symbol = symbol;
         this.quantity = quantity;
-        this.purchasePrice = purchasePrice;
+        this.purchasePriceMicros = purchasePriceMicros;
         this.purchaseDate = purchaseDate;
     }
 
@@ -29,7 +30,11 @@ public class StockHolding  {
     }
 
     public double getPurchasePrice() {
-        return purchasePrice;
+        return Money.toDouble(purchasePriceMicros);
+    }
+
+    public long getPurchasePriceMicros() {
+        return purchasePriceMicros;
     }
 
     public LocalDate getPurchaseDate() {
@@ -37,15 +42,19 @@ public class StockHolding  {
     }
 
     public double getTotalInvestment() {
-        return quantity * purchasePrice;
+        return Money.toDouble(getTotalInvestmentMicros());
+    }
+
+    public long getTotalInvestmentMicros() {
+        return Money.multiply(purchasePriceMicros, quantity);
     }
 
     public void setQuantity(int quantity) {
         this.quantity = quantity;
     }
 
-    public void setPurchasePrice(double purchasePrice) {
-        this.purchasePrice = purchasePrice;
+    public void setPurchasePriceMicros(long purchasePriceMicros) {
+        this.purchasePriceMicros = purchasePriceMicros;
     }
 
     @Override
@@ -53,7 +62,7 @@ public class StockHolding  {
         return "StockHolding{" +
                 "symbol='" + symbol + '\'' +
                 ", quantity=" + quantity +
-                ", purchasePrice=" + purchasePrice +
+                ", purchasePrice=" + Money.format(purchasePriceMicros) +
                 ", purchaseDate=" + purchaseDate +
                 '}';
     }
@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+/**
+ * One numeric model parameter with a default and optional per-symbol overrides
+ * Overrides live in a primitive array indexed by stock list position that grows
+ * as needed; reads never lock and fall back to the default for unset symbols
+ *
+ * @author Hend Okasha
+ */
+class SymbolParameter {
+    private final double defaultValue;
+    private volatile double[] values;
+
+    SymbolParameter(double defaultValue) {
+        this.defaultValue = defaultValue;
+        this.values = new double[0];
+    }
+
+
+    double get(int symbolIndex) {
+        double[] current = values;
+        if (symbolIndex >= current.length) {
+            return defaultValue;
+        }
+        double value = current[symbolIndex];
+        return Double.isNaN(value) ? defaultValue : value;
+    }
+
+
+    synchronized void set(int symbolIndex, double value) {
+        double[] current = values;
+        if (symbolIndex >= current.length) {
+            int oldLength = current.length;
+            current = Arrays.copyOf(current, Math.max(symbolIndex + 1, oldLength * 2));
+            Arrays.fill(current, oldLength, current.length, Double.NaN);
+            current[symbolIndex] = value;
+            values = current;
+        } else {
+            current[symbolIndex] = value;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records quotes to a binary tick file for later replay
+ * Attach it to the market data service as a quote sink; records are buffered
+ * and written through a FileChannel in large blocks
+ *
+ * Layout: magic and version, then a stream of records, each starting with a
+ * kind byte. A symbol record (id, length, UTF-8 bytes) defines a symbol the
+ * first time it appears; a tick record holds the symbol ID, the timestamp in
+ * epoch milliseconds and the price
+ *
+ * @author Hend Okasha
+ */
+public class TickRecorder implements QuoteSink {
+    static final int MAGIC = 0x5450544B; // "TPTK"
+    static final int VERSION = 1;
+    static final byte SYMBOL_RECORD = 1;
+    static final byte TICK_RECORD = 2;
+    static final int TICK_RECORD_BYTES = 1 + 4 + 8 + 8;
+    // The length is stored as an unsigned short
+    static final int MAX_SYMBOL_BYTES = 0xFFFF;
+
+    // Large enough for the longest symbol record
+    private static final int BUFFER_BYTES = 1 << 17;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> symbolIds;
+    private long tickCount;
+    private boolean closed;
+
+    public TickRecorder(String tickFile) throws IOException {
+        this.channel = FileChannel.open(Paths.get(tickFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.symbolIds = new HashMap<>();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if the symbol is longer than MAX_SYMBOL_BYTES; the quote is not recorded
+     */
+    @Override
+    public synchronized void onQuote(Quote quote) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            Integer symbolId = symbolIds.get(quote.getSymbol());
+            if (symbolId == null) {
+                symbolId = defineSymbol(quote.getSymbol());
+            }
+
+            ensureSpace(TICK_RECORD_BYTES);
+            buffer.put(TICK_RECORD);
+            buffer.putInt(symbolId);
+            buffer.putLong(quote.getTimestampMillis());
+            buffer.putDouble(quote.getPrice());
+            tickCount++;
+        } catch (IOException e) {
+            System.out.println("Error writing tick file, recording stopped: " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+
+    public synchronized long getTickCount() {
+        return tickCount;
+    }
+
+
+    /**
+     * Writes out buffered records and closes the file; later quotes are ignored
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeBuffer();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+
+    private int defineSymbol(String symbol) throws IOException {
+        byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol too long to record: " + bytes.length + " bytes");
+        }
+        int symbolId = symbolIds.size();
+
+        ensureSpace(1 + 4 + 2 + bytes.length);
+        buffer.put(SYMBOL_RECORD);
+        buffer.putInt(symbolId);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+
+        symbolIds.put(symbol, symbolId);
+        return symbolId;
+    }
+
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            writeBuffer();
+        }
+    }
+
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing tick file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Replays a tick file written by TickRecorder onto the platform's stocks
+ * Ticks are applied in file order on the calling thread with their recorded
+ * timestamps, so the same file always produces the same price history. The
+ * file is streamed through a fixed buffer, so its size does not matter.
+ * Replay runs as fast as possible, or paced to the recorded timing scaled
+ * by a speed factor (1.0 is real time, 10.0 ten times faster)
+ *
+ * @author Hend Okasha
+ */
+public class TickReplayer {
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final String tickFile;
+    private final Function<String, Stock> stockLookup;
+    private final QuoteSink downstream;
+
+    /**
+     * @param stockLookup finds the stock for a recorded symbol, or returns null to skip it
+     * @param downstream  receives every replayed quote (e.g. MarketDataService::publish); may be null
+     */
+    public TickReplayer(String tickFile, Function<String, Stock> stockLookup, QuoteSink downstream) {
+        this.tickFile = tickFile;
+        this.stockLookup = stockLookup;
+        this.downstream = downstream;
+    }
+
+
+    /**
+     * Replays the whole file; an interrupt stops the replay early
+     *
+     * @param speed AS_FAST_AS_POSSIBLE, or the factor by which recorded time is sped up
+     */
+    public ReplayStats replay(double speed) throws IOException {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must be positive, or 0 for as fast as possible");
+        }
+
+        List<Stock> stocksBySymbolId = new ArrayList<>();
+        long tickCount = 0;
+        long skippedCount = 0;
+        long firstTimestamp = 0;
+        long lastTimestamp = 0;
+        long startNanos = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(tickFile), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.flip();
+
+            if (!fill(channel, buffer, 8) || buffer.getInt() != TickRecorder.MAGIC) {
+                throw new IOException("Not a tick file: " + tickFile);
+            }
+            int version = buffer.getInt();
+            if (version != TickRecorder.VERSION) {
+                throw new IOException("Unsupported tick file version: " + version);
+            }
+
+            replay:
+            while (fill(channel, buffer, 1)) {
+                byte kind = buffer.get();
+
+                if (kind == TickRecorder.SYMBOL_RECORD) {
+                    if (!fill(channel, buffer, 6)) {
+                        break;
+                    }
+                    int symbolId = buffer.getInt();
+                    int length = Short.toUnsignedInt(buffer.getShort());
+                    if (symbolId != stocksBySymbolId.size()) {
+                        throw new IOException("Corrupt tick file: unexpected symbol ID " + symbolId);
+                    }
+                    if (!fill(channel, buffer, length)) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    stocksBySymbolId.add(stockLookup.apply(new String(bytes, StandardCharsets.UTF_8)));
+
+                } else if (kind == TickRecorder.TICK_RECORD) {
+                    if (!fill(channel, buffer, TickRecorder.TICK_RECORD_BYTES - 1)) {
+                        break;
+                    }
+                    int symbolId = buffer.getInt();
+                    long timestamp = buffer.getLong();
+                    double price = buffer.getDouble();
+                    if (symbolId < 0 || symbolId >= stocksBySymbolId.size()) {
+                        throw new IOException("Corrupt tick file: undefined symbol ID " + symbolId);
+                    }
+
+                    if (tickCount + skippedCount == 0) {
+                        firstTimestamp = timestamp;
+                    }
+                    lastTimestamp = timestamp;
+
+                    if (speed != AS_FAST_AS_POSSIBLE &&
+                            !waitUntil(startNanos + (long) ((timestamp - firstTimestamp) * 1e6 / speed))) {
+                        break replay;
+                    }
+
+                    Stock stock = stocksBySymbolId.get(symbolId);
+                    if (stock == null) {
+                        skippedCount++;
+                        continue;
+                    }
+
+                    Quote quote = stock.setCurrentPrice(price, timestamp);
+                    if (downstream != null) {
+                        downstream.onQuote(quote);
+                    }
+                    tickCount++;
+
+                } else {
+                    throw new IOException("Corrupt tick file: unknown record kind " + kind);
+                }
+            }
+
+            return new ReplayStats(tickCount, skippedCount, channel.position() - buffer.remaining(),
+                    System.nanoTime() - startNanos, lastTimestamp - firstTimestamp);
+        }
+    }
+
+
+    /**
+     * Makes at least the given number of bytes readable; false at end of file
+     * (a record cut short by an interrupted recording is treated as the end)
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Parks until the deadline; false if the thread was interrupted
+     */
+    private static boolean waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Result code of a trade on the allocation-free path
+ * Codes are constants, so reporting an outcome never builds a message;
+ * TradeReceipt.getMessage describes a code when text is wanted
+ *
+ * @author Hend Okasha
+ */
+public enum TradeCode {
+    EXECUTED(TradeStatus.EXECUTED),
+    INVALID_REQUEST(TradeStatus.REJECTED),
+    INVALID_QUANTITY(TradeStatus.REJECTED),
+    UNKNOWN_SYMBOL(TradeStatus.REJECTED),
+    STALE_QUOTE(TradeStatus.STALE_QUOTE),
+    INSUFFICIENT_FUNDS(TradeStatus.REJECTED),
+    NO_POSITION(TradeStatus.REJECTED),
+    INSUFFICIENT_SHARES(TradeStatus.REJECTED);
+
+    private final TradeStatus status;
+
+
+    TradeCode(TradeStatus status) {
+        this.status = status;
+    }
+
+    public TradeStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * A single buy or sell request submitted as part of a batch
+ *
+ * @author Hend Okasha
+ */
+public class TradeInstruction {
+    private final User user;
+    private final String symbol;
+    private final TransactionType type;
+    private final int quantity;
+    private final long expectedQuoteVersion;
+
+
+    public TradeInstruction(User user, String symbol, TransactionType type, int quantity) {
+        this(user, symbol, type, quantity, Quote.ANY_VERSION);
+    }
+
+    /**
+     * Instruction that only executes while the stock's quote is still at the given version
+     */
+    public TradeInstruction(User user, String symbol, TransactionType type, int quantity,
+                            long expectedQuoteVersion) {
+        this.user = user;
+        this.symbol = symbol;
+        this.type = type;
+        this.quantity = quantity;
+        this.expectedQuoteVersion = expectedQuoteVersion;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getExpectedQuoteVersion() {
+        return expectedQuoteVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "TradeInstruction{" +
+                "user=" + (user != null ? user.getUsername() : null) +
+                ", symbol='" + symbol + '\'' +
+                ", type=" + type +
+                ", quantity=" + quantity +
+                (expectedQuoteVersion != Quote.ANY_VERSION ? ", expectedQuoteVersion=" + expectedQuoteVersion : "") +
+                '}';
+    }
+}
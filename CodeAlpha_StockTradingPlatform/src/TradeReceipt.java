@@ -0,0 +1,227 @@
+import java.time.LocalDate;
+
+/**
+ * Reusable outcome of a trade on the allocation-free path
+ * The caller owns the receipt and hands it to every trade; the platform
+ * overwrites its fields in place, so a thread can trade in a loop without
+ * creating objects. Amounts are Money micro-units and the timestamp is
+ * epoch nanoseconds in the TransactionStore encoding
+ *
+ * @author Hend Okasha
+ */
+public class TradeReceipt {
+    private TradeCode code;
+    private int userId;
+    private String symbol;
+    private TransactionType type;
+    private int quantity;
+    private long expectedQuoteVersion;
+    private long quoteVersion;
+    private int transactionId;
+    private long priceMicros;
+    private long amountMicros;
+    private long epochNanos;
+    private long balanceMicros;
+    private int holdingQuantity;
+    private long holdingPriceMicros;
+    private LocalDate holdingDate;
+    private long journalSequence;
+
+
+    /**
+     * Clears the previous outcome and records the request
+     */
+    void begin(int userId, String symbol, TransactionType type, int quantity, long expectedQuoteVersion) {
+        this.code = null;
+        this.userId = userId;
+        this.symbol = symbol;
+        this.type = type;
+        this.quantity = quantity;
+        this.expectedQuoteVersion = expectedQuoteVersion;
+        this.quoteVersion = Quote.ANY_VERSION;
+        this.transactionId = 0;
+        this.priceMicros = 0;
+        this.amountMicros = 0;
+        this.epochNanos = 0;
+        this.balanceMicros = 0;
+        this.holdingQuantity = 0;
+        this.holdingPriceMicros = 0;
+        this.holdingDate = null;
+        this.journalSequence = 0;
+    }
+
+
+    TradeCode reject(TradeCode code) {
+        this.code = code;
+        return code;
+    }
+
+
+    void priced(String symbol, long quoteVersion, long priceMicros, long amountMicros) {
+        this.symbol = symbol;
+        this.quoteVersion = quoteVersion;
+        this.priceMicros = priceMicros;
+        this.amountMicros = amountMicros;
+    }
+
+
+    /**
+     * Records the user's position in the symbol (null when there is none)
+     */
+    void position(StockHolding holding) {
+        this.holdingQuantity = (holding != null) ? holding.getQuantity() : 0;
+        this.holdingPriceMicros = (holding != null) ? holding.getPurchasePriceMicros() : 0;
+        this.holdingDate = (holding != null) ? holding.getPurchaseDate() : null;
+    }
+
+
+    TradeCode executed(int transactionId, long epochNanos, long balanceMicros) {
+        this.transactionId = transactionId;
+        this.epochNanos = epochNanos;
+        this.balanceMicros = balanceMicros;
+        this.code = TradeCode.EXECUTED;
+        return TradeCode.EXECUTED;
+    }
+
+
+    void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+
+    public TradeCode getCode() {
+        return code;
+    }
+
+    public boolean isExecuted() {
+        return code == TradeCode.EXECUTED;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getExpectedQuoteVersion() {
+        return expectedQuoteVersion;
+    }
+
+    /**
+     * Version of the quote the trade was priced from, or the current version on STALE_QUOTE
+     */
+    public long getQuoteVersion() {
+        return quoteVersion;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public long getPriceMicros() {
+        return priceMicros;
+    }
+
+    public long getAmountMicros() {
+        return amountMicros;
+    }
+
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    /**
+     * User's cash balance right after the trade
+     */
+    public long getBalanceMicros() {
+        return balanceMicros;
+    }
+
+    /**
+     * Shares of the symbol the user holds after the trade (or holds, when rejected)
+     */
+    public int getHoldingQuantity() {
+        return holdingQuantity;
+    }
+
+    public long getHoldingPriceMicros() {
+        return holdingPriceMicros;
+    }
+
+    public LocalDate getHoldingDate() {
+        return holdingDate;
+    }
+
+    /**
+     * Sequence number of the trade's journal record, for TradingPlatform.awaitDurable; 0 if not journaled
+     */
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+
+    /**
+     * The executed trade as a Transaction, or null if it was not executed
+     */
+    public Transaction toTransaction() {
+        if (!isExecuted()) {
+            return null;
+        }
+        return new Transaction(transactionId, userId, symbol, type, quantity, priceMicros,
+                TransactionStore.toLocalDateTime(epochNanos));
+    }
+
+
+    /**
+     * Explains why the trade was not executed; null for an executed trade
+     */
+    public String getMessage() {
+        if (code == null) {
+            return null;
+        }
+        switch (code) {
+            case INVALID_REQUEST:
+                return "Trade needs a user and a trade type.";
+            case INVALID_QUANTITY:
+                return "Quantity must be positive.";
+            case UNKNOWN_SYMBOL:
+                return "Stock symbol not found.";
+            case STALE_QUOTE:
+                return "Price of " + symbol + " changed (quote version " + expectedQuoteVersion +
+                        " is now " + quoteVersion + "). Please review the new price.";
+            case INSUFFICIENT_FUNDS:
+                return "Insufficient balance. Required: $" + String.format("%.2f", Money.toDouble(amountMicros));
+            case NO_POSITION:
+                return "You don't own any shares of " + symbol + ".";
+            case INSUFFICIENT_SHARES:
+                return "Insufficient shares. You own " + holdingQuantity + " shares.";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TradeReceipt{" +
+                "code=" + code +
+                ", transactionId=" + transactionId +
+                ", userId=" + userId +
+                ", symbol='" + symbol + '\'' +
+                ", type=" + type +
+                ", quantity=" + quantity +
+                ", price=" + Money.format(priceMicros) +
+                ", amount=" + Money.format(amountMicros) +
+                ", balance=" + Money.format(balanceMicros) +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Outcome of a trade request
+ * Carries the recorded transaction on success, or the reason it was not executed
+ *
+ * @author Hend Okasha
+ */
+public class TradeResult {
+    private final TradeStatus status;
+    private final Transaction transaction;
+    private final String message;
+
+
+    private TradeResult(TradeStatus status, Transaction transaction, String message) {
+        this.status = status;
+        this.transaction = transaction;
+        this.message = message;
+    }
+
+    public static TradeResult executed(Transaction transaction) {
+        return new TradeResult(TradeStatus.EXECUTED, transaction, null);
+    }
+
+    public static TradeResult rejected(String message) {
+        return new TradeResult(TradeStatus.REJECTED, null, message);
+    }
+
+    /**
+     * The stock's quote moved past the version the caller priced against
+     */
+    public static TradeResult staleQuote(String message) {
+        return new TradeResult(TradeStatus.STALE_QUOTE, null, message);
+    }
+
+    public static TradeResult skipped(String message) {
+        return new TradeResult(TradeStatus.SKIPPED, null, message);
+    }
+
+    /**
+     * Result of a trade that ran on the allocation-free path
+     */
+    public static TradeResult of(TradeReceipt receipt) {
+        if (receipt.isExecuted()) {
+            return executed(receipt.toTransaction());
+        }
+        return new TradeResult(receipt.getCode().getStatus(), null, receipt.getMessage());
+    }
+
+    public TradeStatus getStatus() {
+        return status;
+    }
+
+    public boolean isExecuted() {
+        return status == TradeStatus.EXECUTED;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "TradeResult{" +
+                "status=" + status +
+                (transaction != null ? ", transactionId=" + transaction.getTransactionId() : "") +
+                (message != null ? ", message='" + message + '\'' : "") +
+                '}';
+    }
+}
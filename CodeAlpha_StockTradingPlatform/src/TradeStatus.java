@@ -0,0 +1,11 @@
+/**
+ * Enumeration for the outcome of a trade request
+ *
+ * @author Hend Okasha
+ */
+public enum TradeStatus {
+    EXECUTED,
+    REJECTED,
+    STALE_QUOTE,
+    SKIPPED
+}
@@ -1,4 +1,4 @@
-import java.util.List;
+import java.time.format.DateTimeFormatter;
 import java.util.Scanner;
 
 /**
@@ -8,6 +8,9 @@ import java.util.Scanner;
  * @author Hend Okasha
  */
 public class TradingMenu {
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final DateTimeFormatter STATS_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final TradingPlatform platform;
     private final MarketDataService marketService;
     private final Scanner scanner;
@@ -57,6 +60,10 @@ public class TradingMenu {
                     depositFundsFlow();
                     break;
                 case "7":
+                case "stats":
+                    viewStatsFlow();
+                    break;
+                case "8":
                     exitProgram();
                     break;
                 default:
@@ -148,7 +155,8 @@ public class TradingMenu {
                 System.out.println("Welcome, " + newUser.getUsername() + "!");
                 return true;
             }
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | ArithmeticException e) {
+            // Amounts beyond what Money can hold are as invalid as malformed ones
             System.out.println("Invalid amount.");
         }
         return false;
@@ -166,7 +174,8 @@ public class TradingMenu {
         System.out.println("  4. View Portfolio");
         System.out.println("  5. View Transaction History");
         System.out.println("  6. Deposit Funds");
-        System.out.println("  7. Exit");
+        System.out.println("  7. Performance Stats");
+        System.out.println("  8. Exit");
         System.out.println("─────────────────────────────────────────");
         System.out.printf("Current Balance: $%.2f%n", currentUser.getBalance());
         System.out.print("Choose an option: ");
@@ -174,8 +183,12 @@ public class TradingMenu {
 
 
     private void viewMarketDataFlow() {
-        System.out.println("\n--- Updating Market Data ---");
-        marketService.updateMarketPrices(platform.getStocks());
+        if (marketService.isRunning()) {
+            System.out.printf("%n--- Live Market Data (%d ticks/s) ---%n", marketService.getTicksPerSecond());
+        } else {
+            System.out.println("\n--- Updating Market Data ---");
+            marketService.updateMarketPrices(platform.getStocks());
+        }
         marketService.displayMarketData(platform.getStocks());
         waitForEnter();
     }
@@ -207,12 +220,16 @@ public class TradingMenu {
                 return;
             }
 
-            double totalCost = stock.getCurrentPrice() * quantity;
+            // Price the summary from one quote so its figures agree while prices keep ticking,
+            // and trade only at that quote's version
+            Quote quote = stock.getQuote();
+            double price = quote.getPrice();
+            double totalCost = price * quantity;
 
             System.out.println("\n─────────────────────────────────────────");
             System.out.printf("Stock: %s%n", symbol);
             System.out.printf("Quantity: %d shares%n", quantity);
-            System.out.printf("Price per share: $%.2f%n", stock.getCurrentPrice());
+            System.out.printf("Price per share: $%.2f%n", price);
             System.out.printf("Total cost: $%.2f%n", totalCost);
             System.out.printf("Your balance: $%.2f%n", currentUser.getBalance());
             System.out.println("─────────────────────────────────────────");
@@ -226,12 +243,15 @@ public class TradingMenu {
                 return;
             }
 
-            Transaction transaction = platform.buyStock(currentUser, symbol, quantity);
-            if (transaction != null) {
+            TradeReceipt receipt = tradeAtConfirmedQuote(stock, TransactionType.BUY, quantity, quote);
+            if (receipt == null) {
+                System.out.println("Purchase cancelled.");
+            } else if (receipt.isExecuted()) {
                 System.out.println("\nPurchase successful!");
-                System.out.println("Transaction ID: " + transaction.getTransactionId());
+                System.out.println("Transaction ID: " + receipt.getTransactionId());
                 System.out.printf("New balance: $%.2f%n", currentUser.getBalance());
             } else {
+                System.out.println(receipt.getMessage());
                 System.out.println("Purchase failed.");
             }
         } catch (NumberFormatException e) {
@@ -281,15 +301,17 @@ public class TradingMenu {
                 return;
             }
 
-            double totalValue = stock.getCurrentPrice() * quantity;
+            Quote quote = stock.getQuote();
+            double price = quote.getPrice();
+            double totalValue = price * quantity;
 
             System.out.println("\n─────────────────────────────────────────");
             System.out.printf("Stock: %s%n", symbol);
             System.out.printf("Quantity: %d shares%n", quantity);
-            System.out.printf("Price per share: $%.2f%n", stock.getCurrentPrice());
+            System.out.printf("Price per share: $%.2f%n", price);
             System.out.printf("Total value: $%.2f%n", totalValue);
             System.out.printf("Purchase price: $%.2f%n", holding.getPurchasePrice());
-            double profitLoss = (stock.getCurrentPrice() - holding.getPurchasePrice()) * quantity;
+            double profitLoss = (price - holding.getPurchasePrice()) * quantity;
             System.out.printf("Profit/Loss: $%.2f%n", profitLoss);
             System.out.println("─────────────────────────────────────────");
 
@@ -302,12 +324,15 @@ public class TradingMenu {
                 return;
             }
 
-            Transaction transaction = platform.sellStock(currentUser, symbol, quantity);
-            if (transaction != null) {
+            TradeReceipt receipt = tradeAtConfirmedQuote(stock, TransactionType.SELL, quantity, quote);
+            if (receipt == null) {
+                System.out.println("Sale cancelled.");
+            } else if (receipt.isExecuted()) {
                 System.out.println("\nSale successful!");
-                System.out.println("Transaction ID: " + transaction.getTransactionId());
+                System.out.println("Transaction ID: " + receipt.getTransactionId());
                 System.out.printf("New balance: $%.2f%n", currentUser.getBalance());
             } else {
+                System.out.println(receipt.getMessage());
                 System.out.println("Sale failed.");
             }
         } catch (NumberFormatException e) {
@@ -317,6 +342,28 @@ public class TradingMenu {
     }
 
 
+    /**
+     * Trades at the quote the user confirmed; if the price has moved since, shows
+     * the new one and asks again, so the fill is always at a price the user saw
+     *
+     * @return the receipt, or null if the user declined a new price
+     */
+    private TradeReceipt tradeAtConfirmedQuote(Stock stock, TransactionType side, int quantity, Quote quote) {
+        TradeReceipt receipt = new TradeReceipt();
+        while (platform.trade(currentUser, stock, side, quantity, quote.getVersion(), receipt) ==
+                TradeCode.STALE_QUOTE) {
+            quote = stock.getQuote();
+            System.out.printf("%nThe price of %s has changed to $%.2f per share (total $%.2f).%n",
+                    stock.getSymbol(), quote.getPrice(), quote.getPrice() * quantity);
+            System.out.print("Continue at the new price? (yes/no): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("yes")) {
+                return null;
+            }
+        }
+        return receipt;
+    }
+
+
     private void viewPortfolioFlow() {
         System.out.println("\n─────────────────────────────────────────");
         System.out.println("         Your Portfolio");
@@ -340,14 +387,15 @@ public class TradingMenu {
         for (StockHolding holding : currentUser.getPortfolio()) {
             Stock stock = platform.getStockBySymbol(holding.getSymbol());
             if (stock != null) {
-                double currentValue = stock.getCurrentPrice() * holding.getQuantity();
+                double price = stock.getCurrentPrice();
+                double currentValue = price * holding.getQuantity();
                 totalValue += currentValue;
 
                 System.out.printf("%-8s %8d $%11.2f $%11.2f $%13.2f%n",
                         holding.getSymbol(),
                         holding.getQuantity(),
                         holding.getPurchasePrice(),
-                        stock.getCurrentPrice(),
+                        price,
                         currentValue);
             }
         }
@@ -378,9 +426,9 @@ public class TradingMenu {
         System.out.println("       Transaction History");
         System.out.println("─────────────────────────────────────────");
 
-        List<Transaction> userTransactions = platform.getUserTransactions(currentUser.getUserId());
+        TransactionPage page = platform.getUserTransactions(currentUser.getUserId(), 0, HISTORY_PAGE_SIZE);
 
-        if (userTransactions.isEmpty()) {
+        if (page.getTransactions().isEmpty()) {
             System.out.println("No transactions yet");
             System.out.println("─────────────────────────────────────────");
             waitForEnter();
@@ -391,15 +439,27 @@ public class TradingMenu {
                 "ID", "Symbol", "Type", "Qty", "Price", "Date");
         System.out.println("─────────────────────────────────────────");
 
-        for (Transaction transaction : userTransactions) {
-            String date = transaction.getTimestamp().toString().substring(0, 16);
-            System.out.printf("%-4d %-8s %-6s %8d $%9.2f %16s%n",
-                    transaction.getTransactionId(),
-                    transaction.getSymbol(),
-                    transaction.getType(),
-                    transaction.getQuantity(),
-                    transaction.getPricePerShare(),
-                    date);
+        while (true) {
+            for (Transaction transaction : page.getTransactions()) {
+                String date = transaction.getTimestamp().toString().substring(0, 16);
+                System.out.printf("%-4d %-8s %-6s %8d $%9.2f %16s%n",
+                        transaction.getTransactionId(),
+                        transaction.getSymbol(),
+                        transaction.getType(),
+                        transaction.getQuantity(),
+                        transaction.getPricePerShare(),
+                        date);
+            }
+
+            if (!page.hasMore()) {
+                break;
+            }
+
+            System.out.print("Enter 'n' for older transactions or press Enter to stop: ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("n")) {
+                break;
+            }
+            page = platform.getUserTransactions(currentUser.getUserId(), page.getNextCursor(), HISTORY_PAGE_SIZE);
         }
 
         System.out.println("─────────────────────────────────────────");
@@ -420,13 +480,27 @@ public class TradingMenu {
             } else {
                 System.out.println("Deposit failed. Amount must be positive.");
             }
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | ArithmeticException e) {
             System.out.println("Invalid amount.");
         }
         waitForEnter();
     }
 
 
+    private void viewStatsFlow() {
+        MetricsSnapshot snapshot = platform.getMetrics().snapshot();
+
+        System.out.println("\n─────────────────────────────────────────");
+        System.out.println("         Performance Stats");
+        System.out.printf("   Uptime: %d s, captured %s%n",
+                snapshot.getUptimeMillis() / 1000, STATS_TIME_FORMAT.format(snapshot.getCapturedAt()));
+        System.out.println("─────────────────────────────────────────");
+        System.out.println(snapshot.format());
+        System.out.println("─────────────────────────────────────────");
+        waitForEnter();
+    }
+
+
     private void displayPortfolioHoldings() {
         System.out.println("\nYour holdings:");
         System.out.println("─────────────────────────────────────────");
@@ -453,6 +527,9 @@ public class TradingMenu {
 
 
     private void exitProgram() {
+        marketService.stop();
+        platform.checkpoint();
+        platform.exportCsv();
         System.out.println("\nThank you for using Stock Trading Platform!");
         System.out.println("Goodbye!");
         scanner.close();
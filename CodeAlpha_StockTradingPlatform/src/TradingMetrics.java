@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in instrumentation of the trading platform
+ * Keeps a latency histogram and a failure counter per measured operation and a
+ * counter per trade outcome. Every update is a lock-free atomic add, so the hot
+ * paths can record each call; snapshot() copies the current state for display
+ * or export while recording carries on
+ *
+ * @author Hend Okasha
+ */
+public class TradingMetrics {
+    private static final MetricOperation[] OPERATIONS = MetricOperation.values();
+    private static final TradeCode[] CODES = TradeCode.values();
+
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] failures;
+    private final LongAdder[] tradeOutcomes;
+    private final long startedMillis;
+
+    public TradingMetrics() {
+        this.latencies = new LatencyHistogram[OPERATIONS.length];
+        this.failures = new LongAdder[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+        this.tradeOutcomes = new LongAdder[CODES.length];
+        for (int i = 0; i < CODES.length; i++) {
+            tradeOutcomes[i] = new LongAdder();
+        }
+        this.startedMillis = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Records a successful operation that started at the given System.nanoTime reading
+     */
+    public void record(MetricOperation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+
+    public void recordFailure(MetricOperation operation, long startNanos) {
+        record(operation, startNanos);
+        failures[operation.ordinal()].increment();
+    }
+
+
+    /**
+     * Records a trade's latency under its side and counts its outcome; trades
+     * rejected as not executed also count as failures of their side
+     */
+    public void recordTrade(TransactionType side, TradeCode code, long startNanos) {
+        tradeOutcomes[code.ordinal()].increment();
+        if (side == null) {
+            return;
+        }
+
+        MetricOperation operation = (side == TransactionType.BUY) ? MetricOperation.BUY : MetricOperation.SELL;
+        if (code == TradeCode.EXECUTED) {
+            record(operation, startNanos);
+        } else {
+            recordFailure(operation, startNanos);
+        }
+    }
+
+
+    public MetricsSnapshot snapshot() {
+        HistogramSnapshot[] latencySnapshots = new HistogramSnapshot[OPERATIONS.length];
+        long[] failureCounts = new long[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencySnapshots[i] = latencies[i].snapshot();
+            failureCounts[i] = failures[i].sum();
+        }
+
+        long[] outcomeCounts = new long[CODES.length];
+        for (int i = 0; i < CODES.length; i++) {
+            outcomeCounts[i] = tradeOutcomes[i].sum();
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), startedMillis,
+                latencySnapshots, failureCounts, outcomeCounts);
+    }
+}
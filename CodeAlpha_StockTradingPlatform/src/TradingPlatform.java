@@ -3,253 +3,1093 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Stock Trading Platform Management System
  * Handles user accounts, stock inventory, and trading operations
+ * Thread-safe: a trade holds only its user's lock, so different users trade in parallel;
+ * checkpoints take the state lock exclusively just long enough to copy a consistent snapshot
  *
  * @author Hend Okasha
  */
 public class TradingPlatform {
-    private List<User> users;
+    private UserRegistry users;
     private List<Stock> stocks;
-    private List<Transaction> transactions;
-    private final String usersFile = "users.txt";
-    private final String stocksFile = "stocks.txt";
-    private final String transactionsFile = "transactions.txt";
-    private final String holdingsFile = "holdings.txt";
-
+    private Map<String, Stock> stockIndex;
+    private TransactionStore transactionStore;
+    private TransactionHistory transactionHistory;
+    private PortfolioValuator portfolioValuator;
+    private HolderIndex holderIndex;
+    private final IdSequence userIds;
+    private final IdSequence transactionIds;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+    public static final long DEFAULT_CHECKPOINT_PERIOD_SECONDS = 60;
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 100;
+    private final String usersFile;
+    private final String stocksFile;
+    private final String transactionsFile;
+    private final String holdingsFile;
+    private final String journalFile;
+    private final String snapshotFile;
+    private final String transactionStoreFile;
+    private final String symbolDictionaryFile;
+    private final int checkpointInterval;
+    private final TransactionJournal journal;
+    private final ReadWriteLock stateLock;
+    private final MatchingEngine matchingEngine;
+    private final IdSequence orderIds;
+    private final TradingMetrics metrics;
+    private final ScheduledExecutorService checkpointScheduler;
+    private final AtomicBoolean checkpointQueued;
+    private final Runnable queuedCheckpoint;
+    private final ReentrantLock checkpointLock;
 
     public TradingPlatform() {
-        users = new ArrayList<>();
-        stocks = new ArrayList<>();
-        transactions = new ArrayList<>();
-        loadStocks();
-        loadUsers();
-        loadHoldings();
-        loadTransactions();
+        this(".");
     }
 
 
-    public User registerUser(String username, double initialBalance) {
-        for (User user : users) {
-            if (user.getUsername().equalsIgnoreCase(username)) {
-                System.out.println("Username already exists.");
-                return null;
+    public TradingPlatform(String dataDirectory) {
+        this(dataDirectory, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+
+    /**
+     * Snapshots are written on a background thread every DEFAULT_CHECKPOINT_PERIOD_SECONDS
+     * while the journal has records, and sooner once it reaches checkpointInterval records;
+     * trades pause only while the state is copied, not while the snapshot is written
+     *
+     * @param dataDirectory      folder holding the snapshot, journal, transaction store and CSV files
+     * @param checkpointInterval journal records that trigger a snapshot before the period is up
+     */
+    public TradingPlatform(String dataDirectory, int checkpointInterval) {
+        this(dataDirectory, checkpointInterval, FsyncPolicy.INTERVAL, DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+
+    /**
+     * @param fsyncPolicy         when the journal writer forces records to disk; trades never wait
+     *                            for it unless the caller asks through awaitDurable
+     * @param fsyncIntervalMillis longest time a journaled record stays unsynced under FsyncPolicy.INTERVAL
+     */
+    public TradingPlatform(String dataDirectory, int checkpointInterval,
+                           FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        usersFile = new File(dataDirectory, "users.txt").getPath();
+        stocksFile = new File(dataDirectory, "stocks.txt").getPath();
+        transactionsFile = new File(dataDirectory, "transactions.txt").getPath();
+        holdingsFile = new File(dataDirectory, "holdings.txt").getPath();
+        journalFile = new File(dataDirectory, "journal.txt").getPath();
+        snapshotFile = new File(dataDirectory, "snapshot.bin").getPath();
+        transactionStoreFile = new File(dataDirectory, "transactions.dat").getPath();
+        symbolDictionaryFile = new File(dataDirectory, "transactions.symbols").getPath();
+        this.checkpointInterval = checkpointInterval;
+        metrics = new TradingMetrics();
+        long loadStart = System.nanoTime();
+
+        users = new UserRegistry();
+        stocks = new CopyOnWriteArrayList<>();
+        stockIndex = new ConcurrentHashMap<>();
+        userIds = new IdSequence();
+        transactionIds = new IdSequence();
+        journal = new TransactionJournal(journalFile, fsyncPolicy, fsyncIntervalMillis);
+        stateLock = new ReentrantReadWriteLock();
+        checkpointLock = new ReentrantLock();
+        matchingEngine = new MatchingEngine();
+        orderIds = new IdSequence();
+        portfolioValuator = new PortfolioValuator(this::getStockBySymbol);
+        holderIndex = new HolderIndex();
+
+        try {
+            transactionStore = new TransactionStore(transactionStoreFile, symbolDictionaryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open transaction store", e);
+        }
+        transactionHistory = new TransactionHistory(transactionStore);
+        // Trades since the last checkpoint are appended again as the journal is replayed,
+        // so a trade that reached the store but not the journal is dropped with its effects
+        transactionStore.rollBackToCheckpoint();
+        indexStoredTransactions();
+
+        // The binary snapshot is the primary store; the CSV files are only imported when it is absent
+        if (!loadSnapshot()) {
+            loadStocks();
+            loadUsers();
+            loadHoldings();
+            // The CSV file only supplies transactions while the store is still empty
+            if (transactionStore.size() == 0) {
+                loadTransactions();
             }
         }
+        replayJournal();
+        metrics.record(MetricOperation.LOAD, loadStart);
+
+        checkpointQueued = new AtomicBoolean();
+        queuedCheckpoint = this::runQueuedCheckpoint;
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(this::checkpointIfJournaled,
+                DEFAULT_CHECKPOINT_PERIOD_SECONDS, DEFAULT_CHECKPOINT_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    public User registerUser(String username, double initialBalance) {
+        if (users.containsUsername(username)) {
+            System.out.println("Username already exists.");
+            return null;
+        }
 
         if (initialBalance < 0) {
             System.out.println("Initial balance cannot be negative.");
             return null;
         }
 
-        int userId = users.stream()
-                .map(User::getUserId)
-                .max(Comparator.naturalOrder())
-                .orElse(0) + 1;
+        int userId = userIds.next();
 
-        User newUser = new User(userId, username, initialBalance);
-        users.add(newUser);
-        saveUsers();
+        User newUser = new User(userId, username, Money.fromDouble(initialBalance));
+        if (!users.add(newUser)) {
+            System.out.println("Username already exists.");
+            return null;
+        }
+
+        stateLock.readLock().lock();
+        try {
+            journal.append("U," + newUser.getUserId() + "," +
+                    newUser.getUsername() + "," +
+                    Money.format(newUser.getBalanceMicros()));
+        } finally {
+            stateLock.readLock().unlock();
+        }
+
+        checkpointIfDue();
         return newUser;
     }
 
 
     public User getUserByUsername(String username) {
-        for (User user : users) {
-            if (user.getUsername().equalsIgnoreCase(username)) {
-                return user;
-            }
-        }
-        return null;
+        return users.getByUsername(username);
+    }
+
+
+    public User getUserById(int userId) {
+        return users.getById(userId);
     }
 
 
     public Stock getStockBySymbol(String symbol) {
-        for (Stock stock : stocks) {
-            if (stock.getSymbol().equalsIgnoreCase(symbol)) {
-                return stock;
+        if (symbol == null) {
+            return null;
+        }
+        return stockIndex.get(normalizeSymbol(symbol));
+    }
+
+
+    public synchronized boolean addStock(Stock stock) {
+        String key = normalizeSymbol(stock.getSymbol());
+        if (stockIndex.containsKey(key)) {
+            System.out.println("Stock " + stock.getSymbol() + " is already listed.");
+            return false;
+        }
+
+        stateLock.readLock().lock();
+        try {
+            stocks.add(stock);
+            stockIndex.put(key, stock);
+            followPrice(stock);
+            journal.append("S," + stock.getSymbol() + "," +
+                    stock.getName() + "," +
+                    Money.format(stock.getCurrentPriceMicros()));
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        return true;
+    }
+
+
+    /**
+     * Lists loaded stocks with a single copy of the copy-on-write stock list,
+     * so loading n stocks stays linear instead of copying the list n times
+     */
+    private synchronized void addStocks(List<Stock> loaded) {
+        List<Stock> listed = new ArrayList<>(loaded.size());
+        for (Stock stock : loaded) {
+            if (stockIndex.putIfAbsent(normalizeSymbol(stock.getSymbol()), stock) == null) {
+                listed.add(stock);
+            } else {
+                System.out.println("Stock " + stock.getSymbol() + " is already listed.");
             }
         }
-        return null;
+        stocks.addAll(listed);
+        for (Stock stock : listed) {
+            followPrice(stock);
+        }
+    }
+
+
+    /**
+     * Keeps portfolio values marked to the stock's price from now on
+     */
+    private void followPrice(Stock stock) {
+        stock.setPriceSink(portfolioValuator);
+        portfolioValuator.stockListed(stock);
+    }
+
+
+    /**
+     * Canonical form used as the symbol index key, so lookups stay case-insensitive
+     */
+    private static String normalizeSymbol(String symbol) {
+        return symbol.trim().toUpperCase(Locale.ROOT);
     }
 
 
     public Transaction buyStock(User user, String symbol, int quantity) {
-        if (quantity <= 0) {
-            System.out.println("Quantity must be positive.");
-            return null;
+        return buyStock(user, symbol, quantity, Quote.ANY_VERSION).getTransaction();
+    }
+
+
+    /**
+     * Buys at the current price, but only while the stock's quote is still at
+     * expectedQuoteVersion (or any version for Quote.ANY_VERSION)
+     */
+    public TradeResult buyStock(User user, String symbol, int quantity, long expectedQuoteVersion) {
+        return tradeAndReport(user, symbol, TransactionType.BUY, quantity, expectedQuoteVersion);
+    }
+
+
+    public Transaction sellStock(User user, String symbol, int quantity) {
+        return sellStock(user, symbol, quantity, Quote.ANY_VERSION).getTransaction();
+    }
+
+
+    /**
+     * Sells at the current price, but only while the stock's quote is still at
+     * expectedQuoteVersion (or any version for Quote.ANY_VERSION)
+     */
+    public TradeResult sellStock(User user, String symbol, int quantity, long expectedQuoteVersion) {
+        return tradeAndReport(user, symbol, TransactionType.SELL, quantity, expectedQuoteVersion);
+    }
+
+
+    /**
+     * Allocation-free trade: buys or sells the stock at its current price and
+     * writes the outcome into the caller's receipt instead of printing it
+     * Once the user holds the stock, the trade creates no objects: the transaction
+     * goes straight into the store and the journal from primitive fields
+     *
+     * @param expectedQuoteVersion quote version the caller priced from, or Quote.ANY_VERSION
+     * @return the receipt's code
+     */
+    public TradeCode trade(User user, Stock stock, TransactionType side, int quantity,
+                           long expectedQuoteVersion, TradeReceipt receipt) {
+        long start = System.nanoTime();
+        if (user == null || side == null) {
+            receipt.begin(0, null, side, quantity, expectedQuoteVersion);
+            metrics.recordTrade(side, TradeCode.INVALID_REQUEST, start);
+            return receipt.reject(TradeCode.INVALID_REQUEST);
         }
 
-        Stock stock = getStockBySymbol(symbol);
-        if (stock == null) {
-            System.out.println("Stock symbol not found.");
-            return null;
+        TradeCode code;
+        stateLock.readLock().lock();
+        user.getLock().lock();
+        try {
+            code = executeTrade(user, stock, side, quantity, expectedQuoteVersion, receipt);
+            if (code == TradeCode.EXECUTED) {
+                journal.appendTrade(receipt);
+            }
+        } finally {
+            user.getLock().unlock();
+            stateLock.readLock().unlock();
         }
 
-        double totalCost = stock.getCurrentPrice() * quantity;
+        checkpointIfDue();
+        metrics.recordTrade(side, code, start);
+        return code;
+    }
 
-        if (user.getBalance() < totalCost) {
-            System.out.println("Insufficient balance. Required: $" + String.format("%.2f", totalCost));
-            return null;
+
+    /**
+     * Waits until the receipt's trade is journaled to disk as far as the fsync policy goes
+     * Trades return as soon as their record is queued; callers that must not
+     * acknowledge a trade before it survives a crash wait here
+     *
+     * @return false if the trade was not executed or its record could not be written
+     */
+    public boolean awaitDurable(TradeReceipt receipt) {
+        return receipt.isExecuted() && journal.awaitDurable(receipt.getJournalSequence());
+    }
+
+
+    /**
+     * Waits until every change made so far is journaled to disk as far as the fsync policy goes
+     *
+     * @return false if a record could not be written
+     */
+    public boolean awaitDurability() {
+        return journal.awaitDurable(journal.getLastSequence());
+    }
+
+
+    /**
+     * Runs a trade on the allocation-free path and reports it as a TradeResult,
+     * printing the reason when it was not executed
+     */
+    private TradeResult tradeAndReport(User user, String symbol, TransactionType side, int quantity,
+                                       long expectedQuoteVersion) {
+        TradeReceipt receipt = new TradeReceipt();
+        trade(user, getStockBySymbol(symbol), side, quantity, expectedQuoteVersion, receipt);
+
+        TradeResult result = TradeResult.of(receipt);
+        if (!result.isExecuted()) {
+            System.out.println(result.getMessage());
         }
+        return result;
+    }
 
 
-        user.withdraw(totalCost);
+    /**
+     * Executes a list of buy/sell instructions and persists them with a single journal write
+     * In atomic mode every instruction is validated first and nothing runs unless all of
+     * them can; otherwise each instruction succeeds or fails on its own, in list order.
+     * Results are returned in the same order as the instructions
+     */
+    public List<TradeResult> executeBatch(List<TradeInstruction> instructions, boolean atomic) {
+        List<TradeResult> results = new ArrayList<>(instructions.size());
+        List<User> lockedUsers = usersInLockOrder(instructions);
 
+        stateLock.readLock().lock();
+        for (User user : lockedUsers) {
+            user.getLock().lock();
+        }
+        try {
+            List<TradeReceipt> records = new ArrayList<>();
+
+            if (atomic) {
+                Quote[] quotes = new Quote[instructions.size()];
+                String failure = validateBatch(instructions, quotes, results);
+
+                if (failure != null) {
+                    for (int i = 0; i < results.size(); i++) {
+                        if (results.get(i) == null) {
+                            results.set(i, TradeResult.skipped(failure));
+                        }
+                    }
+                    return results;
+                }
 
-        StockHolding existingHolding = user.getHolding(symbol);
-        if (existingHolding != null) {
-            int oldQuantity = existingHolding.getQuantity();
-            double oldPrice = existingHolding.getPurchasePrice();
-            int newQuantity = oldQuantity + quantity;
-            double avgPrice = ((oldPrice * oldQuantity) + (stock.getCurrentPrice() * quantity)) / newQuantity;
+                for (int i = 0; i < instructions.size(); i++) {
+                    TradeInstruction instruction = instructions.get(i);
+                    User user = instruction.getUser();
+                    Stock stock = getStockBySymbol(instruction.getSymbol());
+                    TradeReceipt receipt = new TradeReceipt();
+                    receipt.begin(user.getUserId(), stock.getSymbol(), instruction.getType(),
+                            instruction.getQuantity(), instruction.getExpectedQuoteVersion());
+
+                    if (instruction.getType() == TransactionType.BUY) {
+                        settleBuy(user, stock.getSymbol(), instruction.getQuantity(), quotes[i], receipt);
+                    } else {
+                        settleSell(user, stock.getSymbol(), instruction.getQuantity(), quotes[i], receipt);
+                    }
+                    results.set(i, TradeResult.of(receipt));
+                    if (receipt.isExecuted()) {
+                        records.add(receipt);
+                    }
+                }
+            } else {
+                for (TradeInstruction instruction : instructions) {
+                    TradeReceipt receipt = new TradeReceipt();
+                    results.add(executeInstruction(instruction, receipt));
+                    if (receipt.isExecuted()) {
+                        records.add(receipt);
+                    }
+                }
+            }
 
-            existingHolding.setQuantity(newQuantity);
-        } else {
-            StockHolding newHolding = new StockHolding(symbol, quantity,
-                    stock.getCurrentPrice(), LocalDate.now());
-            user.addHolding(newHolding);
+            // Group commit: one write and flush for the whole batch
+            journal.appendTrades(records);
+        } finally {
+            for (int i = lockedUsers.size() - 1; i >= 0; i--) {
+                lockedUsers.get(i).getLock().unlock();
+            }
+            stateLock.readLock().unlock();
         }
 
-        int transactionId = transactions.stream()
-                .map(Transaction::getTransactionId)
-                .max(Comparator.naturalOrder())
-                .orElse(0) + 1;
+        checkpointIfDue();
+        return results;
+    }
+
+
+    private TradeResult executeInstruction(TradeInstruction instruction, TradeReceipt receipt) {
+        if (instruction.getUser() == null || instruction.getType() == null) {
+            return TradeResult.rejected("Instruction needs a user and a trade type.");
+        }
+        executeTrade(instruction.getUser(), getStockBySymbol(instruction.getSymbol()), instruction.getType(),
+                instruction.getQuantity(), instruction.getExpectedQuoteVersion(), receipt);
+        return TradeResult.of(receipt);
+    }
 
-        Transaction transaction = new Transaction(transactionId, user.getUserId(),
-                symbol, TransactionType.BUY, quantity, stock.getCurrentPrice(),
-                LocalDateTime.now());
 
-        transactions.add(transaction);
+    /**
+     * Checks a whole batch against projected balances and holdings, fixing the quote of each
+     * instruction; fills results with a rejection for every invalid instruction (null otherwise)
+     * and returns a failure summary, or null when the batch can run
+     */
+    private String validateBatch(List<TradeInstruction> instructions, Quote[] quotes, List<TradeResult> results) {
+        Map<User, Long> projectedBalances = new HashMap<>();
+        Map<String, Integer> projectedShares = new HashMap<>();
+        String failure = null;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TradeInstruction instruction = instructions.get(i);
+            String error = null;
+            TradeResult staleQuote = null;
+            User user = instruction.getUser();
+            Stock stock = getStockBySymbol(instruction.getSymbol());
+            Quote quote = (stock != null) ? stock.getQuote() : null;
+
+            if (user == null || instruction.getType() == null) {
+                error = "Instruction needs a user and a trade type.";
+            } else if (instruction.getQuantity() <= 0) {
+                error = "Quantity must be positive.";
+            } else if (stock == null) {
+                error = "Stock symbol not found.";
+            } else if ((staleQuote = checkQuoteVersion(stock, quote, instruction.getExpectedQuoteVersion())) != null) {
+                error = staleQuote.getMessage();
+            } else {
+                quotes[i] = quote;
+                long amount = Money.multiply(quote.getPriceMicros(), instruction.getQuantity());
+                long balance = projectedBalances.getOrDefault(user, user.getBalanceMicros());
+                String sharesKey = user.getUserId() + ":" + stock.getSymbol();
+                StockHolding holding = user.getHolding(stock.getSymbol());
+                int shares = projectedShares.getOrDefault(sharesKey, holding != null ? holding.getQuantity() : 0);
+
+                if (instruction.getType() == TransactionType.BUY) {
+                    if (balance < amount) {
+                        error = "Insufficient balance. Required: $" + String.format("%.2f", Money.toDouble(amount));
+                    } else {
+                        projectedBalances.put(user, balance - amount);
+                        projectedShares.put(sharesKey, shares + instruction.getQuantity());
+                    }
+                } else if (shares < instruction.getQuantity()) {
+                    error = "Insufficient shares. You own " + shares + " shares.";
+                } else {
+                    projectedBalances.put(user, balance + amount);
+                    projectedShares.put(sharesKey, shares - instruction.getQuantity());
+                }
+            }
 
-        saveUsers();
-        saveHoldings();
-        saveTransactions();
-        return transaction;
+            if (staleQuote != null) {
+                results.add(staleQuote);
+            } else {
+                results.add(error != null ? TradeResult.rejected(error) : null);
+            }
+            if (error != null && failure == null) {
+                failure = "Batch rejected: instruction " + (i + 1) + " failed (" + error + ")";
+            }
+        }
+        return failure;
     }
 
 
-    public Transaction sellStock(User user, String symbol, int quantity) {
-        if (quantity <= 0) {
-            System.out.println("Quantity must be positive.");
-            return null;
+    private static List<User> usersInLockOrder(List<TradeInstruction> instructions) {
+        Map<Integer, User> distinctUsers = new TreeMap<>();
+        for (TradeInstruction instruction : instructions) {
+            if (instruction.getUser() != null) {
+                distinctUsers.put(instruction.getUser().getUserId(), instruction.getUser());
+            }
         }
+        return new ArrayList<>(distinctUsers.values());
+    }
 
-        Stock stock = getStockBySymbol(symbol);
+
+    /**
+     * Validates and executes one trade; the caller holds the user's lock and journals the receipt
+     */
+    private TradeCode executeTrade(User user, Stock stock, TransactionType side, int quantity,
+                                   long expectedQuoteVersion, TradeReceipt receipt) {
+        receipt.begin(user.getUserId(), (stock != null) ? stock.getSymbol() : null, side, quantity,
+                expectedQuoteVersion);
+
+        if (quantity <= 0) {
+            return receipt.reject(TradeCode.INVALID_QUANTITY);
+        }
         if (stock == null) {
-            System.out.println("Stock symbol not found.");
+            return receipt.reject(TradeCode.UNKNOWN_SYMBOL);
+        }
+
+        // Read once: prices may be updated by another thread while the trade runs
+        Quote quote = stock.getQuote();
+        if (expectedQuoteVersion != Quote.ANY_VERSION && quote.getVersion() != expectedQuoteVersion) {
+            receipt.priced(stock.getSymbol(), quote.getVersion(), quote.getPriceMicros(), 0);
+            return receipt.reject(TradeCode.STALE_QUOTE);
+        }
+
+        return (side == TransactionType.BUY) ?
+                settleBuy(user, stock.getSymbol(), quantity, quote, receipt) :
+                settleSell(user, stock.getSymbol(), quantity, quote, receipt);
+    }
+
+
+    /**
+     * Returns a stale-quote result if the quote is no longer at the expected version, or null
+     */
+    private static TradeResult checkQuoteVersion(Stock stock, Quote quote, long expectedQuoteVersion) {
+        if (expectedQuoteVersion == Quote.ANY_VERSION || quote.getVersion() == expectedQuoteVersion) {
             return null;
         }
+        return TradeResult.staleQuote("Price of " + stock.getSymbol() + " changed (quote version " +
+                expectedQuoteVersion + " is now " + quote.getVersion() + "). Please review the new price.");
+    }
+
+
+    private TradeCode settleBuy(User user, String symbol, int quantity, Quote quote, TradeReceipt receipt) {
+        long price = quote.getPriceMicros();
+        if (price > 0 && quantity > Long.MAX_VALUE / price) {
+            receipt.priced(symbol, quote.getVersion(), price, Long.MAX_VALUE);
+            return receipt.reject(TradeCode.INSUFFICIENT_FUNDS);
+        }
+
+        long totalCost = Money.multiply(price, quantity);
+        receipt.priced(symbol, quote.getVersion(), price, totalCost);
+
+        if (!user.withdrawMicros(totalCost)) {
+            receipt.position(user.getHolding(symbol));
+            return receipt.reject(TradeCode.INSUFFICIENT_FUNDS);
+        }
+
+        return completeBuy(user, symbol, quantity, price, receipt);
+    }
 
+
+    private TradeCode settleSell(User user, String symbol, int quantity, Quote quote, TradeReceipt receipt) {
         StockHolding holding = user.getHolding(symbol);
+        receipt.position(holding);
         if (holding == null) {
-            System.out.println("You don't own any shares of " + symbol + ".");
-            return null;
+            return receipt.reject(TradeCode.NO_POSITION);
         }
 
         if (holding.getQuantity() < quantity) {
-            System.out.println("Insufficient shares. You own " + holding.getQuantity() + " shares.");
-            return null;
+            return receipt.reject(TradeCode.INSUFFICIENT_SHARES);
         }
 
-        double totalValue = stock.getCurrentPrice() * quantity;
+        long totalValue = Money.multiply(quote.getPriceMicros(), quantity);
+        receipt.priced(holding.getSymbol(), quote.getVersion(), quote.getPriceMicros(), totalValue);
+
+
+        user.depositMicros(totalValue);
+
+        return completeSell(user, holding, quantity, quote.getPriceMicros(), receipt);
+    }
+
+
+    /**
+     * Adds bought shares to the user's holding and records the trade
+     * The caller holds the user's lock, has already taken the cash and journals the receipt
+     */
+    private TradeCode completeBuy(User user, String symbol, int quantity, long price, TradeReceipt receipt) {
+        StockHolding holding = user.getHolding(symbol);
+        boolean opened = (holding == null);
+        if (!opened) {
+            int oldQuantity = holding.getQuantity();
+            long oldPrice = holding.getPurchasePriceMicros();
+            int newQuantity = oldQuantity + quantity;
+            long avgPrice = Money.divide(Money.add(Money.multiply(oldPrice, oldQuantity),
+                    Money.multiply(price, quantity)), newQuantity);
 
+            holding.setPurchasePriceMicros(avgPrice);
+            holding.setQuantity(newQuantity);
+        } else {
+            holding = new StockHolding(symbol, quantity,
+                    price, LocalDate.now());
+            user.addHolding(holding);
+        }
 
-        user.deposit(totalValue);
+        return recordTrade(user, symbol, TransactionType.BUY, quantity, price, holding, opened, receipt);
+    }
 
 
+    /**
+     * Removes sold shares from the holding and records the trade
+     * The caller holds the user's lock, has already paid out the cash and journals the receipt
+     */
+    private TradeCode completeSell(User user, StockHolding holding, int quantity, long price, TradeReceipt receipt) {
         int remainingQuantity = holding.getQuantity() - quantity;
-        if (remainingQuantity == 0) {
+        boolean closed = (remainingQuantity == 0);
+        if (closed) {
             user.removeHolding(holding);
         } else {
             holding.setQuantity(remainingQuantity);
         }
 
-        int transactionId = transactions.stream()
-                .map(Transaction::getTransactionId)
-                .max(Comparator.naturalOrder())
-                .orElse(0) + 1;
+        return recordTrade(user, holding.getSymbol(), TransactionType.SELL, quantity, price,
+                closed ? null : holding, closed, receipt);
+    }
+
 
-        Transaction transaction = new Transaction(transactionId, user.getUserId(),
-                symbol, TransactionType.SELL, quantity, stock.getCurrentPrice(),
-                LocalDateTime.now());
+    /**
+     * Appends the trade to the transaction store and history, updates the position
+     * indexes and completes the receipt
+     *
+     * @param holding the user's holding after the trade, or null if the position closed
+     */
+    private TradeCode recordTrade(User user, String symbol, TransactionType type, int quantity, long price,
+                                  StockHolding holding, boolean heldChanged, TradeReceipt receipt) {
+        int transactionId = transactionIds.next();
+        long epochNanos = EpochClock.nowNanos();
+
+        int position = transactionStore.append(transactionId, user.getUserId(), symbol, type,
+                quantity, price, epochNanos);
+        transactionHistory.add(user.getUserId(), position);
+        positionChanged(user, symbol, holding, heldChanged);
+
+        receipt.position(holding);
+        return receipt.executed(transactionId, epochNanos, user.getBalanceMicros());
+    }
 
-        transactions.add(transaction);
 
-        saveUsers();
-        saveHoldings();
-        saveTransactions();
-        return transaction;
+    private void positionChanged(User user, String symbol) {
+        positionChanged(user, symbol, user.getHolding(symbol), true);
     }
 
 
-    public double calculatePortfolioValue(User user) {
-        double totalValue = 0;
+    /**
+     * Passes the user's resulting position in the symbol on to the holder index
+     * and the valuator; called right after a holding changes (under the user's
+     * lock while trading)
+     *
+     * @param heldChanged whether the user started or stopped holding the symbol;
+     *                    the holder index only changes then
+     */
+    private void positionChanged(User user, String symbol, StockHolding holding, boolean heldChanged) {
+        if (heldChanged) {
+            holderIndex.update(user, symbol, holding != null);
+        }
+
+        if (holding != null) {
+            portfolioValuator.updatePosition(user.getUserId(), symbol,
+                    holding.getQuantity(), holding.getTotalInvestmentMicros());
+        } else {
+            portfolioValuator.updatePosition(user.getUserId(), symbol, 0, 0);
+        }
+    }
+
+
+    public Order placeLimitOrder(User user, String symbol, TransactionType side, int quantity, double limitPrice) {
+        if (limitPrice <= 0) {
+            System.out.println("Limit price must be positive.");
+            return null;
+        }
+        return placeOrder(user, symbol, side, OrderType.LIMIT, quantity, OrderBook.priceToTicks(limitPrice));
+    }
 
-        for (StockHolding holding : user.getPortfolio()) {
-            Stock stock = getStockBySymbol(holding.getSymbol());
-            if (stock != null) {
-                totalValue += stock.getCurrentPrice() * holding.getQuantity();
+
+    public Order placeMarketOrder(User user, String symbol, TransactionType side, int quantity) {
+        return placeOrder(user, symbol, side, OrderType.MARKET, quantity, 0);
+    }
+
+
+    public boolean cancelOrder(User user, String symbol, int orderId) {
+        Stock stock = getStockBySymbol(symbol);
+        if (stock == null) {
+            return false;
+        }
+        return matchingEngine.cancel(stock.getSymbol(), orderId, user.getUserId());
+    }
+
+
+    public OrderBook getOrderBook(String symbol) {
+        Stock stock = getStockBySymbol(symbol);
+        return (stock != null) ? matchingEngine.getOrderBook(stock.getSymbol()) : null;
+    }
+
+
+    /**
+     * Validates the order against the user's current cash or shares, then matches it
+     * Funds are not reserved while an order rests; each fill re-checks both parties
+     */
+    private Order placeOrder(User user, String symbol, TransactionType side, OrderType type,
+                             int quantity, long priceTicks) {
+        if (quantity <= 0) {
+            System.out.println("Quantity must be positive.");
+            return null;
+        }
+
+        Stock stock = getStockBySymbol(symbol);
+        if (stock == null) {
+            System.out.println("Stock symbol not found.");
+            return null;
+        }
+
+        Order order = new Order(orderIds.next(), user.getUserId(), stock.getSymbol(),
+                side, type, priceTicks, quantity);
+
+        if (side == TransactionType.BUY && type == OrderType.LIMIT &&
+                user.getBalanceMicros() < Money.multiply(OrderBook.ticksToMicros(priceTicks), quantity)) {
+            System.out.println("Insufficient balance for this order.");
+            order.setStatus(OrderStatus.REJECTED);
+            return order;
+        }
+
+        if (side == TransactionType.SELL) {
+            StockHolding holding = user.getHolding(stock.getSymbol());
+            if (holding == null || holding.getQuantity() < quantity) {
+                System.out.println("Insufficient shares for this order.");
+                order.setStatus(OrderStatus.REJECTED);
+                return order;
             }
         }
 
-        return totalValue;
+        stateLock.readLock().lock();
+        try {
+            matchingEngine.submit(order, this::settleFill);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+
+        checkpointIfDue();
+        return order;
     }
 
 
-    public double[] calculatePortfolioPerformance(User user) {
-        double totalInvestment = 0;
-        double currentValue = 0;
+    /**
+     * Moves cash and shares between the two sides of a fill
+     * Both users are locked in user ID order, so concurrent fills cannot deadlock
+     */
+    private FillOutcome settleFill(Order incoming, Order resting, int quantity, long priceTicks) {
+        if (incoming.getUserId() == resting.getUserId()) {
+            // Self-trade prevention: the older order is withdrawn
+            return FillOutcome.RESTING_REJECTED;
+        }
 
-        for (StockHolding holding : user.getPortfolio()) {
-            totalInvestment += holding.getTotalInvestment();
+        Order buyOrder = (incoming.getSide() == TransactionType.BUY) ? incoming : resting;
+        Order sellOrder = (buyOrder == incoming) ? resting : incoming;
+        User buyer = users.getById(buyOrder.getUserId());
+        User seller = users.getById(sellOrder.getUserId());
+        if (buyer == null) {
+            return rejectionOf(buyOrder, incoming);
+        }
+        if (seller == null) {
+            return rejectionOf(sellOrder, incoming);
+        }
 
-            Stock stock = getStockBySymbol(holding.getSymbol());
-            if (stock != null) {
-                currentValue += stock.getCurrentPrice() * holding.getQuantity();
+        User first = (buyer.getUserId() < seller.getUserId()) ? buyer : seller;
+        User second = (first == buyer) ? seller : buyer;
+        long price = OrderBook.ticksToMicros(priceTicks);
+        long amount = Money.multiply(price, quantity);
+
+        first.getLock().lock();
+        second.getLock().lock();
+        try {
+            StockHolding sellerHolding = seller.getHolding(sellOrder.getSymbol());
+            if (sellerHolding == null || sellerHolding.getQuantity() < quantity) {
+                return rejectionOf(sellOrder, incoming);
+            }
+            if (!buyer.withdrawMicros(amount)) {
+                return rejectionOf(buyOrder, incoming);
             }
+
+            seller.depositMicros(amount);
+
+            TradeReceipt sale = new TradeReceipt();
+            sale.begin(seller.getUserId(), sellerHolding.getSymbol(), TransactionType.SELL, quantity, Quote.ANY_VERSION);
+            sale.priced(sellerHolding.getSymbol(), Quote.ANY_VERSION, price, amount);
+            completeSell(seller, sellerHolding, quantity, price, sale);
+
+            TradeReceipt purchase = new TradeReceipt();
+            purchase.begin(buyer.getUserId(), buyOrder.getSymbol(), TransactionType.BUY, quantity, Quote.ANY_VERSION);
+            purchase.priced(buyOrder.getSymbol(), Quote.ANY_VERSION, price, amount);
+            completeBuy(buyer, buyOrder.getSymbol(), quantity, price, purchase);
+
+            journal.appendTrades(Arrays.asList(sale, purchase));
+            return FillOutcome.FILLED;
+        } finally {
+            second.getLock().unlock();
+            first.getLock().unlock();
         }
+    }
+
+
+    private static FillOutcome rejectionOf(Order order, Order incoming) {
+        return (order == incoming) ? FillOutcome.INCOMING_REJECTED : FillOutcome.RESTING_REJECTED;
+    }
+
+
+    /**
+     * Market value of the user's holdings at the current prices
+     * Served from the running totals of the portfolio valuator
+     */
+    public double calculatePortfolioValue(User user) {
+        long start = System.nanoTime();
+        double value = portfolioValuator.getMarketValue(user.getUserId());
+        metrics.record(MetricOperation.VALUATION, start);
+        return value;
+    }
+
+
+    public double[] calculatePortfolioPerformance(User user) {
+        long start = System.nanoTime();
+        double totalInvestment = portfolioValuator.getCostBasis(user.getUserId());
+        double currentValue = portfolioValuator.getMarketValue(user.getUserId());
 
         double profitLoss = currentValue - totalInvestment;
         double profitLossPercent = (totalInvestment > 0) ?
                 (profitLoss / totalInvestment) * 100 : 0;
 
+        metrics.record(MetricOperation.VALUATION, start);
         return new double[]{totalInvestment, currentValue, profitLoss, profitLossPercent};
     }
 
 
+    /**
+     * Pre-sizes the user's history index for the expected number of further trades,
+     * so a trading loop on the allocation-free path never grows it
+     */
+    public void reserveHistory(User user, int trades) {
+        transactionHistory.reserve(user.getUserId(), trades);
+    }
+
+
     public List<Transaction> getUserTransactions(int userId) {
-        List<Transaction> userTransactions = new ArrayList<>();
+        return transactionHistory.getAll(userId);
+    }
 
-        for (Transaction transaction : transactions) {
-            if (transaction.getUserId() == userId) {
-                userTransactions.add(transaction);
+
+    public TransactionPage getUserTransactions(int userId, int cursor, int pageSize) {
+        return transactionHistory.getPage(userId, cursor, pageSize);
+    }
+
+
+    public List<Transaction> getUserTransactions(int userId, LocalDateTime from, LocalDateTime to) {
+        return transactionHistory.getRange(userId, from, to);
+    }
+
+
+    /**
+     * Writes a fresh binary snapshot and discards the journal records it covers
+     * Called by the checkpoint thread (see the constructor) and on exit
+     * Trades are held off only while the state is copied and the journal segment
+     * closed at the same point; the disk work runs alongside them
+     */
+    public void checkpoint() {
+        checkpointLock.lock();
+        long start = System.nanoTime();
+        try {
+            TradingSnapshot.Image image;
+            int storedTransactions;
+            stateLock.writeLock().lock();
+            try {
+                image = TradingSnapshot.capture(stocks, users.getAll());
+                storedTransactions = transactionStore.size();
+                journal.closeSegment();
+            } finally {
+                stateLock.writeLock().unlock();
             }
+
+            // Recovery rebuilds trades after the previous checkpoint from the journal,
+            // so every trade the snapshot covers must be journaled before it is written
+            if (!journal.awaitSegmentClosed()) {
+                throw new IOException("Journal segment could not be closed");
+            }
+            transactionStore.force();
+            TradingSnapshot.write(snapshotFile, image);
+            // write() returns once the snapshot is durable, so only then may the covered records go
+            transactionStore.markCheckpoint(storedTransactions);
+            journal.deleteClosedSegments();
+            metrics.record(MetricOperation.SAVE, start);
+        } catch (IOException e) {
+            metrics.recordFailure(MetricOperation.SAVE, start);
+            System.out.println("Error saving snapshot: " + e.getMessage());
+        } finally {
+            checkpointLock.unlock();
         }
+    }
+
 
-        return userTransactions;
+    /**
+     * Writes the current state to the human-readable CSV files
+     */
+    public void exportCsv() {
+        stateLock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            saveStocks();
+            saveUsers();
+            saveHoldings();
+            saveTransactions();
+            metrics.record(MetricOperation.SAVE, start);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Releases the journal and transaction store files
+     * The platform must not be used afterwards
+     */
+    public void close() {
+        // A checkpoint already running or queued is allowed to finish
+        checkpointScheduler.shutdown();
+        try {
+            checkpointScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        stateLock.writeLock().lock();
+        try {
+            journal.close();
+            transactionStore.close();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Hands a checkpoint to the checkpoint thread once the journal is long enough;
+     * the trading thread never waits for it
+     */
+    private void checkpointIfDue() {
+        if (journal.getRecordCount() < checkpointInterval || !checkpointQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            checkpointScheduler.execute(queuedCheckpoint);
+        } catch (RejectedExecutionException e) {
+            // The platform is closing
+            checkpointQueued.set(false);
+        }
+    }
+
+
+    private void runQueuedCheckpoint() {
+        checkpointQueued.set(false);
+        // A periodic checkpoint may have run since this one was queued
+        if (journal.getRecordCount() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+
+    private void checkpointIfJournaled() {
+        if (journal.getRecordCount() > 0) {
+            checkpoint();
+        }
+    }
+
+
+    /**
+     * Live counters and latency histograms; call snapshot() on it for a consistent copy
+     */
+    public TradingMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Running portfolio values; already follows the prices of every listed stock
+     */
+    public PortfolioValuator getPortfolioValuator() {
+        return portfolioValuator;
+    }
+
+
+    /**
+     * Users currently holding the symbol, in user ID order
+     */
+    public Collection<User> getHolders(String symbol) {
+        return holderIndex.getHolders(symbol);
+    }
+
+
+    /**
+     * Copies all holdings into primitive arrays for the RiskAggregator
+     */
+    public RiskSnapshot captureRiskSnapshot() {
+        return RiskSnapshot.capture(users.getAll(), this::getStockBySymbol);
     }
 
 
     public List<User> getUsers() {
-        return users;
+        return new ArrayList<>(users.getAll());
     }
 
+    /**
+     * Read-only view; use addStock so the symbol index stays in step
+     */
     public List<Stock> getStocks() {
-        return stocks;
+        return Collections.unmodifiableList(stocks);
     }
 
+    /**
+     * Read-only view over the transaction store; records are decoded as they are read
+     */
     public List<Transaction> getTransactions() {
-        return transactions;
+        return transactionStore.asList();
+    }
+
+
+    private void indexStoredTransactions() {
+        for (int position = 0; position < transactionStore.size(); position++) {
+            transactionHistory.add(transactionStore.getUserId(position), position);
+            transactionIds.observe(transactionStore.getTransactionId(position));
+        }
+    }
+
+
+    private boolean loadSnapshot() {
+        if (!new File(snapshotFile).exists()) {
+            return false;
+        }
+
+        try {
+            TradingSnapshot snapshot = TradingSnapshot.load(snapshotFile);
+
+            addStocks(snapshot.getStocks());
+            for (User user : snapshot.getUsers()) {
+                userIds.observe(user.getUserId());
+                users.add(user);
+                for (StockHolding holding : user.getPortfolio()) {
+                    positionChanged(user, holding.getSymbol());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error loading snapshot, importing CSV files instead: " + e.getMessage());
+            stocks.clear();
+            stockIndex.clear();
+            users.clear();
+            holderIndex.clear();
+            portfolioValuator.rebuild(users.getAll());
+            return false;
+        }
     }
 
 
     private void loadStocks() {
         stocks.clear();
+        stockIndex.clear();
         File file = new File(stocksFile);
 
         if (!file.exists()) {
@@ -257,6 +1097,7 @@ public class TradingPlatform {
             return;
         }
 
+        List<Stock> loaded = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = br.readLine()) != null) {
@@ -271,18 +1112,19 @@ public class TradingPlatform {
 
                 String symbol = parts[0].trim();
                 String name = parts[1].trim();
-                double currentPrice = Double.parseDouble(parts[2].trim());
-                double previousPrice = Double.parseDouble(parts[3].trim());
+                long currentPrice = Money.parse(parts[2]);
+                long previousPrice = Money.parse(parts[3]);
 
-                Stock stock = new Stock(symbol, name, currentPrice);
-                stock.setCurrentPrice(currentPrice);
-                stocks.add(stock);
+                Stock stock = new Stock(symbol, name, Money.toDouble(previousPrice));
+                stock.setCurrentPriceMicros(currentPrice, System.currentTimeMillis());
+                loaded.add(stock);
             }
         } catch (IOException e) {
             System.out.println("Error loading stocks: " + e.getMessage());
         } catch (NumberFormatException e) {
             System.out.println("Invalid stock data in file: " + e.getMessage());
         }
+        addStocks(loaded);
     }
 
 
@@ -291,8 +1133,8 @@ public class TradingPlatform {
             for (Stock stock : stocks) {
                 pw.println(stock.getSymbol() + "," +
                         stock.getName() + "," +
-                        stock.getCurrentPrice() + "," +
-                        stock.getPreviousPrice());
+                        Money.format(stock.getQuote().getPriceMicros()) + "," +
+                        Money.format(stock.getQuote().getPreviousPriceMicros()));
             }
         } catch (IOException e) {
             System.out.println("Error saving stocks: " + e.getMessage());
@@ -323,9 +1165,12 @@ public class TradingPlatform {
 
                 int userId = Integer.parseInt(parts[0].trim());
                 String username = parts[1].trim();
-                double balance = Double.parseDouble(parts[2].trim());
+                long balance = Money.parse(parts[2]);
 
-                users.add(new User(userId, username, balance));
+                userIds.observe(userId);
+                if (!users.add(new User(userId, username, balance))) {
+                    System.out.println("Skipping duplicate user in file: " + username);
+                }
             }
         } catch (IOException e) {
             System.out.println("Error loading users: " + e.getMessage());
@@ -337,10 +1182,10 @@ public class TradingPlatform {
 
     private void saveUsers() {
         try (PrintWriter pw = new PrintWriter(new FileWriter(usersFile))) {
-            for (User user : users) {
+            for (User user : users.getAll()) {
                 pw.println(user.getUserId() + "," +
                         user.getUsername() + "," +
-                        user.getBalance());
+                        Money.format(user.getBalanceMicros()));
             }
         } catch (IOException e) {
             System.out.println("Error saving users: " + e.getMessage());
@@ -371,16 +1216,14 @@ public class TradingPlatform {
                 int userId = Integer.parseInt(parts[0].trim());
                 String symbol = parts[1].trim();
                 int quantity = Integer.parseInt(parts[2].trim());
-                double purchasePrice = Double.parseDouble(parts[3].trim());
+                long purchasePrice = Money.parse(parts[3]);
                 LocalDate purchaseDate = LocalDate.parse(parts[4].trim());
 
-                for (User user : users) {
-                    if (user.getUserId() == userId) {
-                        StockHolding holding = new StockHolding(symbol, quantity,
-                                purchasePrice, purchaseDate);
-                        user.addHolding(holding);
-                        break;
-                    }
+                User user = users.getById(userId);
+                if (user != null) {
+                    user.addHolding(new StockHolding(symbol, quantity,
+                            purchasePrice, purchaseDate));
+                    positionChanged(user, symbol);
                 }
             }
         } catch (IOException e) {
@@ -395,12 +1238,12 @@ public class TradingPlatform {
 
     private void saveHoldings() {
         try (PrintWriter pw = new PrintWriter(new FileWriter(holdingsFile))) {
-            for (User user : users) {
+            for (User user : users.getAll()) {
                 for (StockHolding holding : user.getPortfolio()) {
                     pw.println(user.getUserId() + "," +
                             holding.getSymbol() + "," +
                             holding.getQuantity() + "," +
-                            holding.getPurchasePrice() + "," +
+                            Money.format(holding.getPurchasePriceMicros()) + "," +
                             holding.getPurchaseDate());
                 }
             }
@@ -411,7 +1254,6 @@ public class TradingPlatform {
 
 
     private void loadTransactions() {
-        transactions.clear();
         File file = new File(transactionsFile);
 
         if (!file.exists()) {
@@ -436,10 +1278,10 @@ public class TradingPlatform {
                 String symbol = parts[2].trim();
                 TransactionType type = TransactionType.valueOf(parts[3].trim().toUpperCase());
                 int quantity = Integer.parseInt(parts[4].trim());
-                double pricePerShare = Double.parseDouble(parts[5].trim());
+                long pricePerShare = Money.parse(parts[5]);
                 LocalDateTime timestamp = LocalDateTime.parse(parts[6].trim());
 
-                transactions.add(new Transaction(transactionId, userId, symbol,
+                recordTransaction(new Transaction(transactionId, userId, symbol,
                         type, quantity, pricePerShare, timestamp));
             }
         } catch (IOException e) {
@@ -454,17 +1296,108 @@ public class TradingPlatform {
 
     private void saveTransactions() {
         try (PrintWriter pw = new PrintWriter(new FileWriter(transactionsFile))) {
-            for (Transaction transaction : transactions) {
+            for (Transaction transaction : transactionStore.asList()) {
                 pw.println(transaction.getTransactionId() + "," +
                         transaction.getUserId() + "," +
                         transaction.getSymbol() + "," +
                         transaction.getType() + "," +
                         transaction.getQuantity() + "," +
-                        transaction.getPricePerShare() + "," +
+                        Money.format(transaction.getPricePerShareMicros()) + "," +
                         transaction.getTimestamp());
             }
         } catch (IOException e) {
             System.out.println("Error saving transactions: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+
+    private void recordTransaction(Transaction transaction) {
+        int position = transactionStore.append(transaction);
+        transactionHistory.add(transaction.getUserId(), position);
+        transactionIds.observe(transaction.getTransactionId());
+    }
+
+
+    private void replayJournal() {
+        List<String> records = journal.readRecords();
+        if (records.isEmpty()) {
+            return;
+        }
+
+        int lastSnapshotTransactionId = transactionIds.current();
+
+        int replayed = 0;
+        for (String record : records) {
+            try {
+                String[] parts = record.split(",");
+
+                if (parts[0].equals("U") && parts.length >= 4) {
+                    int userId = Integer.parseInt(parts[1].trim());
+                    userIds.observe(userId);
+                    users.add(new User(userId, parts[2].trim(), Money.parse(parts[3])));
+                    replayed++;
+                    continue;
+                }
+
+                if (parts[0].equals("S") && parts.length >= 4) {
+                    String symbol = parts[1].trim();
+                    if (getStockBySymbol(symbol) == null) {
+                        addStocks(Collections.singletonList(
+                                new Stock(symbol, parts[2].trim(), Money.toDouble(Money.parse(parts[3])))));
+                    }
+                    replayed++;
+                    continue;
+                }
+
+                if (parts.length < 11) {
+                    continue;
+                }
+
+                int transactionId = Integer.parseInt(parts[0].trim());
+                int userId = Integer.parseInt(parts[1].trim());
+                String symbol = parts[2].trim();
+                TransactionType type = TransactionType.valueOf(parts[3].trim().toUpperCase());
+                int quantity = Integer.parseInt(parts[4].trim());
+                long pricePerShare = Money.parse(parts[5]);
+                LocalDateTime timestamp = LocalDateTime.parse(parts[6].trim());
+                long balance = Money.parse(parts[7]);
+                int holdingQuantity = Integer.parseInt(parts[8].trim());
+                long holdingPrice = Money.parse(parts[9]);
+
+                User user = users.getById(userId);
+                if (user == null) {
+                    continue;
+                }
+
+                user.setBalanceMicros(balance);
+
+                StockHolding holding = user.getHolding(symbol);
+                if (holdingQuantity == 0) {
+                    if (holding != null) {
+                        user.removeHolding(holding);
+                    }
+                } else if (holding != null) {
+                    holding.setQuantity(holdingQuantity);
+                    holding.setPurchasePriceMicros(holdingPrice);
+                } else {
+                    user.addHolding(new StockHolding(symbol, holdingQuantity,
+                            holdingPrice, LocalDate.parse(parts[10].trim())));
+                }
+                positionChanged(user, symbol);
+
+                // Trades already covered by the snapshot are not recorded twice
+                if (transactionId > lastSnapshotTransactionId) {
+                    recordTransaction(new Transaction(transactionId, userId, symbol,
+                            type, quantity, pricePerShare, timestamp));
+                }
+                replayed++;
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid timestamp in journal: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid journal record: " + e.getMessage());
+            }
+        }
+
+        System.out.println("Recovered " + replayed + " record(s) from journal.");
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the trading state
+ * Records are stored column by column (all IDs, then all prices, ...) with
+ * symbols dictionary-encoded, so loading is a memory map plus bulk array reads
+ * instead of parsing text line by line
+ *
+ * Layout: magic, version, symbol dictionary, then the stock, user and holding
+ * sections, each starting with its record count. Prices and balances are
+ * Money micro-units; transactions live in the TransactionStore
+ *
+ * @author Hend Okasha
+ */
+public class TradingSnapshot {
+    private static final int MAGIC = 0x5450534E; // "TPSN"
+    private static final int VERSION = 3;
+
+    private final List<Stock> stocks;
+    private final List<User> users;
+
+
+    private TradingSnapshot(List<Stock> stocks, List<User> users) {
+        this.stocks = stocks;
+        this.users = users;
+    }
+
+    public List<Stock> getStocks() {
+        return stocks;
+    }
+
+    /**
+     * Users with their holdings attached
+     */
+    public List<User> getUsers() {
+        return users;
+    }
+
+
+    /**
+     * Copies the state into the snapshot's columns for write(); the caller keeps
+     * the state from changing meanwhile. This is only array copies, so that the
+     * encoding and the disk work can then run alongside trading
+     */
+    public static Image capture(Collection<Stock> stocks, Collection<User> users) {
+        Map<String, Integer> symbolIds = new HashMap<>();
+        List<String> symbols = new ArrayList<>();
+        Image image = new Image();
+
+        int stockCount = stocks.size();
+        image.stockSymbols = new int[stockCount];
+        image.currentPrices = new long[stockCount];
+        image.previousPrices = new long[stockCount];
+        image.names = new String[stockCount];
+        int s = 0;
+        for (Stock stock : stocks) {
+            image.stockSymbols[s] = symbolId(stock.getSymbol(), symbolIds, symbols);
+            image.currentPrices[s] = stock.getCurrentPriceMicros();
+            image.previousPrices[s] = stock.getQuote().getPreviousPriceMicros();
+            image.names[s] = stock.getName();
+            s++;
+        }
+
+        int userCount = users.size();
+        int holdingCount = 0;
+        for (User user : users) {
+            holdingCount += user.getPortfolio().size();
+        }
+        image.userIds = new int[userCount];
+        image.balances = new long[userCount];
+        image.usernames = new String[userCount];
+        image.holdingOwners = new int[holdingCount];
+        image.holdingSymbols = new int[holdingCount];
+        image.quantities = new int[holdingCount];
+        image.purchasePrices = new long[holdingCount];
+        image.purchaseDays = new long[holdingCount];
+        int u = 0;
+        int h = 0;
+        for (User user : users) {
+            image.userIds[u] = user.getUserId();
+            image.balances[u] = user.getBalanceMicros();
+            image.usernames[u] = user.getUsername();
+            u++;
+            for (StockHolding holding : user.getPortfolio()) {
+                image.holdingOwners[h] = user.getUserId();
+                image.holdingSymbols[h] = symbolId(holding.getSymbol(), symbolIds, symbols);
+                image.quantities[h] = holding.getQuantity();
+                image.purchasePrices[h] = holding.getPurchasePriceMicros();
+                image.purchaseDays[h] = holding.getPurchaseDate().toEpochDay();
+                h++;
+            }
+        }
+
+        image.symbols = symbols.toArray(new String[0]);
+        return image;
+    }
+
+
+    /**
+     * Writes a captured snapshot to a temporary file and moves it into place,
+     * so a crash never leaves a half-written snapshot behind
+     * The file is synced before the move and the directory after it, so once
+     * this returns the snapshot survives a power loss and the journal
+     * records it covers can be discarded
+     */
+    public static void write(String snapshotFile, Image image) throws IOException {
+        Path target = Paths.get(snapshotFile);
+        Path temp = Paths.get(snapshotFile + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            writeStrings(out, image.symbols);
+
+            out.writeInt(image.stockSymbols.length);
+            writeInts(out, image.stockSymbols);
+            writeLongs(out, image.currentPrices);
+            writeLongs(out, image.previousPrices);
+            writeStrings(out, image.names);
+
+            out.writeInt(image.userIds.length);
+            writeInts(out, image.userIds);
+            writeLongs(out, image.balances);
+            writeStrings(out, image.usernames);
+
+            out.writeInt(image.holdingOwners.length);
+            writeInts(out, image.holdingOwners);
+            writeInts(out, image.holdingSymbols);
+            writeInts(out, image.quantities);
+            writeLongs(out, image.purchasePrices);
+            writeLongs(out, image.purchaseDays);
+
+            // Flushed, not closed: closing the stream would close the channel before the sync
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+
+    /**
+     * Makes a rename in the directory durable
+     * Platforms that cannot open a directory (Windows) persist renames without it
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel open = channel) {
+            open.force(true);
+        }
+    }
+
+
+    /**
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public static TradingSnapshot load(String snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotFile), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, snapshotFile);
+        } catch (RuntimeException e) {
+            // A truncated or damaged file shows up as a bad count, length or index while decoding
+            throw new IOException("Corrupt snapshot " + snapshotFile + ": " + e, e);
+        }
+    }
+
+
+    private static TradingSnapshot read(ByteBuffer buffer, String snapshotFile) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a trading snapshot: " + snapshotFile);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        String[] symbols = readStrings(buffer);
+
+        int stockCount = buffer.getInt();
+        int[] stockSymbols = readInts(buffer, stockCount);
+        long[] currentPrices = readLongs(buffer, stockCount);
+        long[] previousPrices = readLongs(buffer, stockCount);
+        String[] names = readStrings(buffer);
+
+        List<Stock> stocks = new ArrayList<>(stockCount);
+        for (int i = 0; i < stockCount; i++) {
+            Stock stock = new Stock(symbols[stockSymbols[i]], names[i], Money.toDouble(previousPrices[i]));
+            stock.setCurrentPriceMicros(currentPrices[i], System.currentTimeMillis());
+            stocks.add(stock);
+        }
+
+        int userCount = buffer.getInt();
+        int[] userIds = readInts(buffer, userCount);
+        long[] balances = readLongs(buffer, userCount);
+        String[] usernames = readStrings(buffer);
+
+        List<User> users = new ArrayList<>(userCount);
+        Map<Integer, User> usersById = new HashMap<>(userCount * 2);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User(userIds[i], usernames[i], balances[i]);
+            users.add(user);
+            usersById.put(userIds[i], user);
+        }
+
+        int holdingCount = buffer.getInt();
+        int[] owners = readInts(buffer, holdingCount);
+        int[] holdingSymbols = readInts(buffer, holdingCount);
+        int[] quantities = readInts(buffer, holdingCount);
+        long[] purchasePrices = readLongs(buffer, holdingCount);
+        long[] purchaseDays = readLongs(buffer, holdingCount);
+
+        for (int i = 0; i < holdingCount; i++) {
+            User owner = usersById.get(owners[i]);
+            if (owner != null) {
+                owner.addHolding(new StockHolding(symbols[holdingSymbols[i]], quantities[i],
+                        purchasePrices[i], LocalDate.ofEpochDay(purchaseDays[i])));
+            }
+        }
+
+        return new TradingSnapshot(stocks, users);
+    }
+
+
+    private static int symbolId(String symbol, Map<String, Integer> symbolIds, List<String> symbols) {
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            symbolIds.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id;
+    }
+
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        // Every string takes at least its four-byte length
+        String[] values = new String[readCount(buffer, Integer.BYTES)];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[readCount(buffer, 1)];
+            buffer.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        checkCount(buffer, count, Integer.BYTES);
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+
+    private static long[] readLongs(ByteBuffer buffer, int count) {
+        checkCount(buffer, count, Long.BYTES);
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+
+    private static int readCount(ByteBuffer buffer, int bytesPerValue) {
+        int count = buffer.getInt();
+        checkCount(buffer, count, bytesPerValue);
+        return count;
+    }
+
+
+    /**
+     * Rejects a count that is negative or needs more bytes than the file has left
+     */
+    private static void checkCount(ByteBuffer buffer, int count, int bytesPerValue) {
+        if (count < 0 || (long) count * bytesPerValue > buffer.remaining()) {
+            throw new IllegalStateException("Count " + count + " at offset " + buffer.position() +
+                    " does not fit in the remaining " + buffer.remaining() + " bytes");
+        }
+    }
+
+
+    /**
+     * State copied by capture(), laid out column by column as in the file
+     */
+    public static final class Image {
+        private String[] symbols;
+        private int[] stockSymbols;
+        private long[] currentPrices;
+        private long[] previousPrices;
+        private String[] names;
+        private int[] userIds;
+        private long[] balances;
+        private String[] usernames;
+        private int[] holdingOwners;
+        private int[] holdingSymbols;
+        private int[] quantities;
+        private long[] purchasePrices;
+        private long[] purchaseDays;
+
+
+        private Image() {
+        }
+    }
+}
@@ -3,29 +3,30 @@ import java.time.LocalDateTime;
 /**
  * Represents a trading transaction record
  * Contains all information about a buy or sell operation
+ * Price and total are held in Money micro-units, so the total is exact
  *
  * @author Hend Okasha
  */
 public class Transaction {
-    private int transactionId;
-    private int userId;
-    private String symbol;
-    private TransactionType type;
-    private int quantity;
-    private double pricePerShare;
-    private double totalAmount;
-    private LocalDateTime timestamp;
+    private final int transactionId;
+    private final int userId;
+    private final String symbol;
+    private final TransactionType type;
+    private final int quantity;
+    private final long pricePerShareMicros;
+    private final long totalAmountMicros;
+    private final LocalDateTime timestamp;
 
 
     public Transaction(int transactionId, int userId, String symbol, TransactionType type,
-                       int quantity, double pricePerShare, LocalDateTime timestamp) {
+                       int quantity, long pricePerShareMicros, LocalDateTime timestamp) {
         this.transactionId = transactionId;
         this.userId = userId;
         this.symbol = symbol;
         this.type = type;
         this.quantity = quantity;
-        this.pricePerShare = pricePerShare;
-        this.totalAmount = quantity * pricePerShare;
+        this.pricePerShareMicros = pricePerShareMicros;
+        this.totalAmountMicros = Money.multiply(pricePerShareMicros, quantity);
         this.timestamp = timestamp;
     }
 
@@ -50,11 +51,19 @@ public class Transaction {
     }
 
     public double getPricePerShare() {
-        return pricePerShare;
+        return Money.toDouble(pricePerShareMicros);
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toDouble(totalAmountMicros);
+    }
+
+    public long getPricePerShareMicros() {
+        return pricePerShareMicros;
+    }
+
+    public long getTotalAmountMicros() {
+        return totalAmountMicros;
     }
 
     public LocalDateTime getTimestamp() {
@@ -69,8 +78,8 @@ public class Transaction {
                 ", symbol='" + symbol + '\'' +
                 ", type=" + type +
                 ", quantity=" + quantity +
-                ", pricePerShare=" + pricePerShare +
-                ", totalAmount=" + totalAmount +
+                ", pricePerShare=" + Money.format(pricePerShareMicros) +
+                ", totalAmount=" + Money.format(totalAmountMicros) +
                 ", timestamp=" + timestamp +
                 '}';
     }
@@ -0,0 +1,189 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-user index over the transaction store
+ * Each user's entries are store positions kept in transaction ID order, which is
+ * also chronological order, so pages and time ranges are found by binary search
+ * and only the returned records are decoded
+ * Each user's position list is guarded by its own monitor
+ *
+ * @author Hend Okasha
+ */
+public class TransactionHistory {
+    private final TransactionStore store;
+    private final IdTable<PositionList> positionsByUser;
+
+    public TransactionHistory(TransactionStore store) {
+        this.store = store;
+        this.positionsByUser = new IdTable<>();
+    }
+
+
+    public void add(int userId, int position) {
+        PositionList positions = positionsByUser.computeIfAbsent(userId, id -> new PositionList());
+
+        synchronized (positions) {
+            int transactionId = store.getTransactionId(position);
+            if (positions.size == 0 || store.getTransactionId(positions.last()) < transactionId) {
+                positions.add(positions.size, position);
+            } else {
+                positions.add(indexOfFirstAtOrAfter(positions, transactionId), position);
+            }
+        }
+    }
+
+
+    /**
+     * Pre-sizes the user's index for the given number of further transactions,
+     * so recording them never has to grow it
+     */
+    public void reserve(int userId, int additional) {
+        PositionList positions = positionsByUser.computeIfAbsent(userId, id -> new PositionList());
+        synchronized (positions) {
+            positions.ensureCapacity(positions.size + additional);
+        }
+    }
+
+
+    public void clear() {
+        positionsByUser.clear();
+    }
+
+
+    public int count(int userId) {
+        PositionList positions = positionsByUser.get(userId);
+        if (positions == null) {
+            return 0;
+        }
+        synchronized (positions) {
+            return positions.size;
+        }
+    }
+
+
+    /**
+     * All transactions of a user, oldest first
+     */
+    public List<Transaction> getAll(int userId) {
+        List<Transaction> all = new ArrayList<>();
+        PositionList positions = positionsByUser.get(userId);
+        if (positions == null) {
+            return all;
+        }
+
+        synchronized (positions) {
+            for (int i = 0; i < positions.size; i++) {
+                all.add(store.get(positions.values[i]));
+            }
+        }
+        return all;
+    }
+
+
+    /**
+     * Returns up to pageSize transactions older than the cursor, newest first
+     * A cursor of 0 starts from the most recent transaction
+     */
+    public TransactionPage getPage(int userId, int cursor, int pageSize) {
+        List<Transaction> page = new ArrayList<>();
+        PositionList positions = positionsByUser.get(userId);
+        if (positions == null) {
+            return new TransactionPage(page, 0);
+        }
+
+        synchronized (positions) {
+            int end = (cursor <= 0) ? positions.size : indexOfFirstAtOrAfter(positions, cursor);
+            int start = Math.max(0, end - Math.max(pageSize, 0));
+
+            for (int i = end - 1; i >= start; i--) {
+                page.add(store.get(positions.values[i]));
+            }
+
+            int nextCursor = (start > 0) ? store.getTransactionId(positions.values[start]) : 0;
+            return new TransactionPage(page, nextCursor);
+        }
+    }
+
+
+    /**
+     * Transactions with from <= timestamp < to, newest first
+     */
+    public List<Transaction> getRange(int userId, LocalDateTime from, LocalDateTime to) {
+        List<Transaction> range = new ArrayList<>();
+        PositionList positions = positionsByUser.get(userId);
+        if (positions == null) {
+            return range;
+        }
+
+        synchronized (positions) {
+            int start = indexOfFirstAtOrAfter(positions, TransactionStore.toEpochNanos(from));
+            int end = indexOfFirstAtOrAfter(positions, TransactionStore.toEpochNanos(to));
+
+            for (int i = end - 1; i >= start; i--) {
+                range.add(store.get(positions.values[i]));
+            }
+        }
+        return range;
+    }
+
+
+    private int indexOfFirstAtOrAfter(PositionList positions, int transactionId) {
+        int low = 0;
+        int high = positions.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (store.getTransactionId(positions.values[mid]) < transactionId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    private int indexOfFirstAtOrAfter(PositionList positions, long epochNanos) {
+        int low = 0;
+        int high = positions.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (store.getEpochNanos(positions.values[mid]) < epochNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Growable array of store positions
+     */
+    private static class PositionList {
+        private int[] values = new int[8];
+        private int size;
+
+        int last() {
+            return values[size - 1];
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        void add(int index, int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = position;
+            size++;
+        }
+    }
+}
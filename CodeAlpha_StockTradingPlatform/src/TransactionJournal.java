@@ -0,0 +1,297 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Append-only journal for trading records
+ * Each trade is written as a single line, so a trade costs one append
+ * instead of rewriting the snapshot files
+ * Trade records are formatted from the receipt into a reused builder and
+ * handed to a PersistenceWriter, which writes and syncs them on its own
+ * thread, so journaling a trade creates no objects and does not wait for
+ * the disk. Append methods return the record's sequence number for
+ * awaitDurable
+ *
+ * A checkpoint closes the current segment: the file is moved aside as
+ * journalFile.N and appends continue in a fresh file, so the closed segments
+ * can be deleted once a snapshot covers them while trading goes on. Recovery
+ * reads any closed segments left by an interrupted checkpoint first
+ *
+ * @author Hend Okasha
+ */
+public class TransactionJournal {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final String journalFile;
+    private final StringBuilder line;
+    private final PersistenceWriter writer;
+    private int recordCount;
+    private int lastSegment;
+
+    public TransactionJournal(String journalFile, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.journalFile = journalFile;
+        this.line = new StringBuilder(256);
+        this.writer = new PersistenceWriter(journalFile, fsyncPolicy, fsyncIntervalMillis,
+                PersistenceWriter.DEFAULT_QUEUE_BYTES);
+        this.recordCount = 0;
+
+        // New segments are numbered after any left behind
+        for (File segment : closedSegments()) {
+            lastSegment = Math.max(lastSegment, segmentNumber(segment));
+        }
+    }
+
+
+    public synchronized long append(String record) {
+        return appendAll(Collections.singletonList(record));
+    }
+
+
+    /**
+     * Group commit: the records are queued together and reach the disk in the same batch
+     */
+    public synchronized long appendAll(List<String> records) {
+        for (String record : records) {
+            writer.appendLine(record);
+        }
+        recordCount += records.size();
+        return writer.getAppendedSequence();
+    }
+
+
+    /**
+     * Queues an executed trade together with the user's resulting balance and
+     * holding, so replaying the record is idempotent
+     */
+    public synchronized long appendTrade(TradeReceipt receipt) {
+        long sequence = writer.appendLine(formatTrade(receipt));
+        receipt.setJournalSequence(sequence);
+        recordCount++;
+        return sequence;
+    }
+
+
+    /**
+     * Group commit of several executed trades
+     */
+    public synchronized long appendTrades(List<TradeReceipt> receipts) {
+        for (TradeReceipt receipt : receipts) {
+            receipt.setJournalSequence(writer.appendLine(formatTrade(receipt)));
+        }
+        recordCount += receipts.size();
+        return writer.getAppendedSequence();
+    }
+
+
+    /**
+     * Waits until the record with the given sequence number is on disk, as far
+     * as the fsync policy goes
+     *
+     * @return false if the record could not be written; records lost before a
+     * closeSegment() count as durable once the segment is closed
+     */
+    public boolean awaitDurable(long sequence) {
+        return writer.awaitDurable(sequence);
+    }
+
+
+    /**
+     * Sequence number of the last record appended so far
+     */
+    public long getLastSequence() {
+        return writer.getAppendedSequence();
+    }
+
+
+    /**
+     * Records of the closed segments, oldest first, then of the current file
+     */
+    public synchronized List<String> readRecords() {
+        List<String> records = new ArrayList<>();
+        for (File segment : closedSegments()) {
+            readRecords(segment, records);
+        }
+        readRecords(new File(journalFile), records);
+
+        recordCount = records.size();
+        return records;
+    }
+
+
+    /**
+     * Closes the current segment after the records appended so far; later records
+     * start a fresh file. The writer thread moves the file aside, so this does
+     * not wait for the disk; see awaitSegmentClosed
+     */
+    public synchronized void closeSegment() {
+        writer.rotate(segmentFile(++lastSegment));
+        recordCount = 0;
+    }
+
+
+    /**
+     * Waits until the segment closed last is written, synced and moved aside
+     *
+     * @return false if it could not be moved aside; its records then stay in the current file
+     */
+    public boolean awaitSegmentClosed() {
+        return writer.awaitRotation();
+    }
+
+
+    /**
+     * Deletes every closed segment once a durable snapshot covers their records
+     */
+    public void deleteClosedSegments() {
+        for (File segment : closedSegments()) {
+            if (!segment.delete()) {
+                System.out.println("Error deleting journal segment " + segment.getName());
+            }
+        }
+    }
+
+
+    /**
+     * Writes out and syncs every queued record, then stops the writer
+     */
+    public synchronized void close() {
+        writer.close();
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+
+    private static void readRecords(File file, List<String> records) {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    records.add(line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+        }
+    }
+
+
+    private String segmentFile(int number) {
+        return journalFile + "." + number;
+    }
+
+
+    /**
+     * Closed segment files (journalFile.1, journalFile.2, ...) in the order they were closed
+     */
+    private List<File> closedSegments() {
+        File journal = new File(journalFile).getAbsoluteFile();
+        String prefix = journal.getName() + ".";
+        File[] segments = journal.getParentFile().listFiles((directory, name) ->
+                name.startsWith(prefix) && name.length() > prefix.length() && name.length() - prefix.length() <= 9 &&
+                        name.substring(prefix.length()).chars().allMatch(Character::isDigit));
+        if (segments == null) {
+            return Collections.emptyList();
+        }
+
+        List<File> sorted = new ArrayList<>(Arrays.asList(segments));
+        sorted.sort(Comparator.comparingInt(TransactionJournal::segmentNumber));
+        return sorted;
+    }
+
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+
+    /**
+     * Trade record: ID, user, symbol, type, quantity, price, timestamp, then the
+     * user's balance and holding quantity, price and date ("-" if none)
+     */
+    private StringBuilder formatTrade(TradeReceipt receipt) {
+        line.setLength(0);
+        line.append(receipt.getTransactionId()).append(',')
+                .append(receipt.getUserId()).append(',')
+                .append(receipt.getSymbol()).append(',')
+                .append(receipt.getType().name()).append(',')
+                .append(receipt.getQuantity()).append(',');
+        Money.appendTo(line, receipt.getPriceMicros()).append(',');
+        appendTimestamp(line, receipt.getEpochNanos()).append(',');
+        Money.appendTo(line, receipt.getBalanceMicros()).append(',')
+                .append(receipt.getHoldingQuantity()).append(',');
+        Money.appendTo(line, receipt.getHoldingPriceMicros()).append(',');
+
+        LocalDate holdingDate = receipt.getHoldingDate();
+        if (holdingDate != null) {
+            appendDate(line, holdingDate.getYear(), holdingDate.getMonthValue(), holdingDate.getDayOfMonth());
+        } else {
+            line.append('-');
+        }
+        return line;
+    }
+
+
+    /**
+     * ISO local date-time of epoch nanoseconds (as LocalDateTime.parse reads it)
+     */
+    private static StringBuilder appendTimestamp(StringBuilder out, long epochNanos) {
+        long epochSecond = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        // Civil date from a day count, proleptic Gregorian calendar with March-based years
+        long shifted = epochDay + 719_468;
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        appendDate(out, year, month, day).append('T');
+        appendPadded(out, secondOfDay / 3600, 2).append(':');
+        appendPadded(out, secondOfDay / 60 % 60, 2).append(':');
+        appendPadded(out, secondOfDay % 60, 2).append('.');
+        return appendPadded(out, Math.floorMod(epochNanos, NANOS_PER_SECOND), 9);
+    }
+
+
+    private static StringBuilder appendDate(StringBuilder out, int year, int month, int day) {
+        appendPadded(out, year, 4).append('-');
+        appendPadded(out, month, 2).append('-');
+        return appendPadded(out, day, 2);
+    }
+
+
+    private static StringBuilder appendPadded(StringBuilder out, long value, int width) {
+        for (long bound = pow10(width - 1); bound > value && bound > 1; bound /= 10) {
+            out.append('0');
+        }
+        return out.append(value);
+    }
+
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,33 @@
+import java.util.List;
+
+/**
+ * One page of a user's transaction history, newest first
+ * The cursor is passed back to fetch the next, older page
+ *
+ * @author Hend Okasha
+ */
+public class TransactionPage {
+    private final List<Transaction> transactions;
+    private final int nextCursor;
+
+
+    public TransactionPage(List<Transaction> transactions, int nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Transaction ID to pass as the cursor for the next page, or 0 when there are no older entries
+     */
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != 0;
+    }
+}
@@ -0,0 +1,340 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Off-heap transaction history backed by a memory-mapped file
+ * Each transaction is a fixed-width record addressed by its position, with the
+ * symbol stored as a dictionary ID and the timestamp as epoch nanoseconds, so
+ * history costs no heap; records are decoded from the mapping (and paged in
+ * by the OS) only when read
+ *
+ * Trades reach the store before the journal, so after a crash the store can
+ * hold trades whose journal records were lost. The header therefore also
+ * records how many records the last snapshot covers; recovery rolls the store
+ * back to that point and rebuilds the rest from the journal
+ *
+ * @author Hend Okasha
+ */
+public class TransactionStore {
+    private static final int MAGIC = 0x54505458; // "TPTX"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 8;
+    // Set once a checkpoint count has been written; stores from before it have none
+    private static final int CHECKPOINT_MARK_OFFSET = 16;
+    private static final int CHECKPOINT_COUNT_OFFSET = 24;
+
+    // Record layout
+    private static final int RECORD_BYTES = 40;
+    private static final int ID_OFFSET = 0;
+    private static final int USER_OFFSET = 4;
+    private static final int SYMBOL_OFFSET = 8;
+    private static final int TYPE_OFFSET = 12;
+    private static final int QUANTITY_OFFSET = 16;
+    private static final int PRICE_OFFSET = 20;
+    private static final int TIMESTAMP_OFFSET = 28;
+
+    private static final int RECORDS_PER_SEGMENT = 1 << 16;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final String symbolsFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments;
+    private final Map<String, Integer> symbolIds;
+    // Dictionary by ID; grown by copying under the store lock and republished for lock-free readers
+    private volatile String[] symbols;
+    private int symbolCount;
+    private PrintWriter symbolWriter;
+    private volatile int size;
+
+
+    public TransactionStore(String storeFile, String symbolsFile) throws IOException {
+        this.symbolsFile = symbolsFile;
+        this.channel = FileChannel.open(Paths.get(storeFile),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segments = new CopyOnWriteArrayList<>();
+        this.symbols = new String[16];
+        this.symbolIds = new ConcurrentHashMap<>();
+
+        boolean created = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(COUNT_OFFSET, 0);
+            header.putInt(CHECKPOINT_MARK_OFFSET, MAGIC);
+            header.putLong(CHECKPOINT_COUNT_OFFSET, 0);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a transaction store: " + storeFile);
+        }
+
+        this.size = (int) header.getLong(COUNT_OFFSET);
+        while (segments.size() * (long) RECORDS_PER_SEGMENT < Math.max(size, 1)) {
+            mapNextSegment();
+        }
+        loadSymbols();
+    }
+
+
+    /**
+     * Appends a transaction and returns its position in the store
+     */
+    public synchronized int append(Transaction transaction) {
+        return append(transaction.getTransactionId(), transaction.getUserId(),
+                transaction.getSymbol(), transaction.getType(), transaction.getQuantity(),
+                transaction.getPricePerShareMicros(), toEpochNanos(transaction.getTimestamp()));
+    }
+
+
+    /**
+     * Appends a transaction given as fields, without creating a Transaction
+     */
+    public synchronized int append(int transactionId, int userId, String symbol, TransactionType type,
+                                   int quantity, long priceMicros, long epochNanos) {
+        int position = size;
+        if (position == segments.size() * RECORDS_PER_SEGMENT) {
+            try {
+                mapNextSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot grow transaction store", e);
+            }
+        }
+
+        MappedByteBuffer segment = segments.get(position / RECORDS_PER_SEGMENT);
+        int offset = (position % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+        segment.putInt(offset + ID_OFFSET, transactionId);
+        segment.putInt(offset + USER_OFFSET, userId);
+        segment.putInt(offset + SYMBOL_OFFSET, symbolId(symbol));
+        segment.putInt(offset + TYPE_OFFSET, type.ordinal());
+        segment.putInt(offset + QUANTITY_OFFSET, quantity);
+        segment.putLong(offset + PRICE_OFFSET, priceMicros);
+        segment.putLong(offset + TIMESTAMP_OFFSET, epochNanos);
+
+        // Publishing the new size makes the record visible to readers
+        header.putLong(COUNT_OFFSET, position + 1);
+        size = position + 1;
+        return position;
+    }
+
+
+    public Transaction get(int position) {
+        checkPosition(position);
+
+        MappedByteBuffer segment = segments.get(position / RECORDS_PER_SEGMENT);
+        int offset = (position % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+        long epochNanos = segment.getLong(offset + TIMESTAMP_OFFSET);
+
+        return new Transaction(
+                segment.getInt(offset + ID_OFFSET),
+                segment.getInt(offset + USER_OFFSET),
+                symbols[segment.getInt(offset + SYMBOL_OFFSET)],
+                TYPES[segment.getInt(offset + TYPE_OFFSET)],
+                segment.getInt(offset + QUANTITY_OFFSET),
+                segment.getLong(offset + PRICE_OFFSET),
+                toLocalDateTime(epochNanos));
+    }
+
+
+    public int getTransactionId(int position) {
+        return readInt(position, ID_OFFSET);
+    }
+
+    public int getUserId(int position) {
+        return readInt(position, USER_OFFSET);
+    }
+
+    public long getEpochNanos(int position) {
+        checkPosition(position);
+        MappedByteBuffer segment = segments.get(position / RECORDS_PER_SEGMENT);
+        return segment.getLong((position % RECORDS_PER_SEGMENT) * RECORD_BYTES + TIMESTAMP_OFFSET);
+    }
+
+
+    public static long toEpochNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Read-only list view; elements are decoded on access
+     */
+    public List<Transaction> asList() {
+        return new StoreView();
+    }
+
+
+    /**
+     * Records that the first count transactions are covered by a durable snapshot
+     *
+     * @param count the store size when the snapshot's state was captured
+     */
+    public void markCheckpoint(int count) {
+        synchronized (this) {
+            header.putLong(CHECKPOINT_COUNT_OFFSET, count);
+            header.putInt(CHECKPOINT_MARK_OFFSET, MAGIC);
+        }
+        header.force();
+    }
+
+
+    /**
+     * Drops the records appended since the last checkpoint, so that recovery can
+     * append them again from the journal; does nothing for a store that has
+     * never been checkpointed by a version that records the count
+     *
+     * @return the number of records dropped
+     */
+    public synchronized int rollBackToCheckpoint() {
+        if (header.getInt(CHECKPOINT_MARK_OFFSET) != MAGIC) {
+            return 0;
+        }
+        int checkpointed = (int) header.getLong(CHECKPOINT_COUNT_OFFSET);
+        if (checkpointed >= size) {
+            return 0;
+        }
+
+        int dropped = size - checkpointed;
+        header.putLong(COUNT_OFFSET, checkpointed);
+        header.force();
+        size = checkpointed;
+        return dropped;
+    }
+
+
+    /**
+     * Flushes written records to disk
+     * Appends are not held up meanwhile; records appended while it runs may or may not be included
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+
+    public synchronized void close() {
+        force();
+        if (symbolWriter != null) {
+            symbolWriter.close();
+            symbolWriter = null;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing transaction store: " + e.getMessage());
+        }
+    }
+
+
+    private int readInt(int position, int fieldOffset) {
+        checkPosition(position);
+        MappedByteBuffer segment = segments.get(position / RECORDS_PER_SEGMENT);
+        return segment.getInt((position % RECORDS_PER_SEGMENT) * RECORD_BYTES + fieldOffset);
+    }
+
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+        }
+    }
+
+
+    private void mapNextSegment() throws IOException {
+        long start = HEADER_BYTES + (long) segments.size() * RECORDS_PER_SEGMENT * RECORD_BYTES;
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start,
+                (long) RECORDS_PER_SEGMENT * RECORD_BYTES));
+    }
+
+
+    private int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) {
+            return id;
+        }
+
+        try {
+            if (symbolWriter == null) {
+                symbolWriter = new PrintWriter(new FileWriter(symbolsFile, true));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save symbol dictionary", e);
+        }
+        symbolWriter.println(symbol);
+        symbolWriter.flush();
+        if (symbolWriter.checkError()) {
+            throw new UncheckedIOException(new IOException("Cannot save symbol dictionary"));
+        }
+
+        return addSymbol(symbol);
+    }
+
+
+    private int addSymbol(String symbol) {
+        String[] table = symbols;
+        if (symbolCount == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[symbolCount] = symbol;
+        symbols = table;
+        symbolIds.put(symbol, symbolCount);
+        return symbolCount++;
+    }
+
+
+    private void loadSymbols() throws IOException {
+        File file = new File(symbolsFile);
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                addSymbol(line.trim());
+            }
+        }
+    }
+
+
+    private class StoreView extends AbstractList<Transaction> implements RandomAccess {
+        @Override
+        public Transaction get(int index) {
+            return TransactionStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,24 +1,29 @@
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a user in the trading platform
  * Contains user information and portfolio holdings
+ * Balance updates are guarded by the user's own lock, so different users can trade in parallel
+ * The balance is held in Money micro-units; the double accessors are for display and input
  *
  * @author Hend Okasha
  */
 public class User  {
     private int userId;
     private String username;
-    private double balance;
+    private volatile long balanceMicros;
     private List<StockHolding> portfolio;
+    private final ReentrantLock lock;
 
 
-    public User(int userId, String username, double balance) {
+    public User(int userId, String username, long balanceMicros) {
         this.userId = userId;
         this.username = username;
-        this.balance = balance;
-        this.portfolio = new ArrayList<>();
+        this.balanceMicros = balanceMicros;
+        this.portfolio = new CopyOnWriteArrayList<>();
+        this.lock = new ReentrantLock();
     }
 
 
@@ -31,7 +36,20 @@ public class User  {
     }
 
     public double getBalance() {
-        return balance;
+        return Money.toDouble(balanceMicros);
+    }
+
+    public long getBalanceMicros() {
+        return balanceMicros;
+    }
+
+    public void setBalanceMicros(long balanceMicros) {
+        lock.lock();
+        try {
+            this.balanceMicros = balanceMicros;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public List<StockHolding> getPortfolio() {
@@ -39,21 +57,52 @@ public class User  {
     }
 
 
+    /**
+     * Lock held by the trading engine around a whole trade for this user
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+
     public boolean deposit(double amount) {
-        if (amount <= 0) {
+        return amount > 0 && depositMicros(Money.fromDouble(amount));
+    }
+
+
+    public boolean depositMicros(long amountMicros) {
+        if (amountMicros <= 0) {
             return false;
         }
-        balance += amount;
-        return true;
+        lock.lock();
+        try {
+            balanceMicros = Money.add(balanceMicros, amountMicros);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
 
     public boolean withdraw(double amount) {
-        if (amount <= 0 || amount > balance) {
+        return amount > 0 && withdrawMicros(Money.fromDouble(amount));
+    }
+
+
+    public boolean withdrawMicros(long amountMicros) {
+        if (amountMicros <= 0) {
             return false;
         }
-        balance -= amount;
-        return true;
+        lock.lock();
+        try {
+            if (amountMicros > balanceMicros) {
+                return false;
+            }
+            balanceMicros -= amountMicros;
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
 
@@ -81,7 +130,7 @@ public class User  {
         return "User{" +
                 "userId=" + userId +
                 ", username='" + username + '\'' +
-                ", balance=" + balance +
+                ", balance=" + Money.format(balanceMicros) +
                 ", portfolio=" + portfolio +
                 '}';
     }
@@ -0,0 +1,75 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Directory of platform users
+ * Indexes accounts by user ID and by normalized username
+ * Lookups are lock-free; registration is serialized so both indexes agree
+ *
+ * @author Hend Okasha
+ */
+public class UserRegistry {
+    private final Map<Integer, User> usersById;
+    private final Map<String, User> usersByName;
+
+    public UserRegistry() {
+        usersById = new ConcurrentSkipListMap<>();
+        usersByName = new ConcurrentHashMap<>();
+    }
+
+
+    public synchronized boolean add(User user) {
+        String key = normalizeUsername(user.getUsername());
+        if (usersById.containsKey(user.getUserId()) || usersByName.containsKey(key)) {
+            return false;
+        }
+
+        usersById.put(user.getUserId(), user);
+        usersByName.put(key, user);
+        return true;
+    }
+
+
+    public User getById(int userId) {
+        return usersById.get(userId);
+    }
+
+
+    public User getByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        return usersByName.get(normalizeUsername(username));
+    }
+
+
+    public boolean containsUsername(String username) {
+        return getByUsername(username) != null;
+    }
+
+
+    /**
+     * Read-only view of all users in user ID order
+     */
+    public Collection<User> getAll() {
+        return Collections.unmodifiableCollection(usersById.values());
+    }
+
+    public int size() {
+        return usersById.size();
+    }
+
+    public synchronized void clear() {
+        usersById.clear();
+        usersByName.clear();
+    }
+
+
+    private static String normalizeUsername(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}
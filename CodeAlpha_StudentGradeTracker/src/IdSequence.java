@@ -0,0 +1,82 @@
+import java.io.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe generator for increasing record IDs
+ * Keeps a high-water mark instead of scanning existing records for the
+ * largest ID; the mark is restored from loaded records via observe and,
+ * when a sequence file is given, from that file as well
+ *
+ * @author Hend Okasha
+ */
+public class IdSequence {
+    private final AtomicInteger lastId;
+    private final String sequenceFile;
+
+
+    public IdSequence() {
+        this(null);
+    }
+
+    public IdSequence(String sequenceFile) {
+        this.lastId = new AtomicInteger(0);
+        this.sequenceFile = sequenceFile;
+        load();
+    }
+
+
+    public int next() {
+        int id = lastId.incrementAndGet();
+        save();
+        return id;
+    }
+
+
+    /**
+     * Raises the high-water mark to an ID that is already in use
+     */
+    public void observe(int id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+
+    public int current() {
+        return lastId.get();
+    }
+
+
+    private void load() {
+        if (sequenceFile == null) {
+            return;
+        }
+
+        File file = new File(sequenceFile);
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line = br.readLine();
+            if (line != null && !line.trim().isEmpty()) {
+                observe(Integer.parseInt(line.trim()));
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading ID sequence: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid ID sequence in file: " + e.getMessage());
+        }
+    }
+
+
+    private synchronized void save() {
+        if (sequenceFile == null) {
+            return;
+        }
+
+        try (PrintWriter pw = new PrintWriter(new FileWriter(sequenceFile))) {
+            pw.println(lastId.get());
+        } catch (IOException e) {
+            System.out.println("Error saving ID sequence: " + e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.Comparator;
 
 /**
  * Student Management System
@@ -9,12 +8,14 @@ import java.util.Comparator;
  */
 public class StudentManager {
     private ArrayList<Student> students;
+    private final IdSequence studentIds;
 
     /**
      * Constructor - initializes the student management system
      */
     public StudentManager() {
         students = new ArrayList<>();
+        studentIds = new IdSequence();
     }
 
     public void addStudent(String name) {
@@ -26,10 +27,7 @@ public class StudentManager {
             }
         }
 
-        int studentId = students.stream()
-                .map(Student::getId)
-                .max(Comparator.naturalOrder())
-                .orElse(0) + 1;
+        int studentId = studentIds.next();
 
         Student newStudent = new Student(studentId, name);
         students.add(newStudent);